@@ -0,0 +1,60 @@
+package com.fileshare.app.util;
+
+import com.fileshare.app.util.JwtUtil.TokenClaims;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * token验证耗时对比：JJWT 0.9.1 与专用HS256验证器
+ * 运行：mvn -P jmh test-compile exec:exec，输出中的 gc.alloc.rate.norm 为每次验证分配的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET = "fileshare123456";
+
+    private String token;
+
+    private Hs256TokenVerifier verifier;
+
+    @Setup
+    public void setUp() {
+        token = Jwts.builder()
+                .setSubject("1234567")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(2)))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+        verifier = new Hs256TokenVerifier(TextCodec.BASE64.decode(SECRET));
+    }
+
+    @Benchmark
+    public Claims jjwt() {
+        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public TokenClaims hs256Verifier() {
+        return verifier.verify(token);
+    }
+}
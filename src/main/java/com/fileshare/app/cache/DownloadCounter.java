@@ -0,0 +1,112 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.mapper.FileInfoMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下载次数写回缓冲
+ * 下载时只在内存中累加（LongAdder），由定时任务批量执行 download_count = download_count + ?，
+ * 增量写法与节点数无关，多实例同时刷写也不会丢失或覆盖计数
+ */
+@Component
+public class DownloadCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(DownloadCounter.class);
+
+    @Autowired
+    private FileInfoMapper fileInfoMapper;
+
+    @Value("${file.download-count.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 正在接收计数的缓冲区
+     */
+    private volatile ConcurrentHashMap<Long, LongAdder> active = new ConcurrentHashMap<>();
+
+    /**
+     * 上一周期换下的缓冲区，留出一个周期让仍持有旧引用的线程完成累加后再刷写
+     */
+    private ConcurrentHashMap<Long, LongAdder> retired;
+
+    /**
+     * 记录一次下载
+     *
+     * @param fileId 文件ID
+     */
+    public void increment(Long fileId) {
+        active.computeIfAbsent(fileId, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * 定时刷写到数据库
+     */
+    @Scheduled(fixedDelayString = "${file.download-count.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        ConcurrentHashMap<Long, LongAdder> toFlush = retired;
+        retired = active;
+        active = new ConcurrentHashMap<>();
+        if (toFlush != null) {
+            write(toFlush);
+        }
+    }
+
+    /**
+     * 停机前刷写全部计数
+     */
+    @PreDestroy
+    public synchronized void flushAll() {
+        ConcurrentHashMap<Long, LongAdder> previous = retired;
+        ConcurrentHashMap<Long, LongAdder> current = active;
+        retired = null;
+        active = new ConcurrentHashMap<>();
+        if (previous != null) {
+            write(previous);
+        }
+        write(current);
+        log.info("下载次数已全部写回数据库");
+    }
+
+    /**
+     * 分批写入增量，失败的增量放回缓冲区等待下次刷写
+     */
+    private void write(Map<Long, LongAdder> counters) {
+        Map<Long, Long> batch = new HashMap<>();
+        for (Map.Entry<Long, LongAdder> entry : counters.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta > 0) {
+                batch.put(entry.getKey(), delta);
+            }
+            if (batch.size() >= batchSize) {
+                writeBatch(batch);
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(Map<Long, Long> batch) {
+        try {
+            fileInfoMapper.incrementDownloadCounts(batch);
+            log.debug("写回下载次数: {} 个文件", batch.size());
+        } catch (Exception e) {
+            log.error("写回下载次数失败，稍后重试: {}", e.getMessage());
+            for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+                active.computeIfAbsent(entry.getKey(), key -> new LongAdder()).add(entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.entity.DownloadHistory;
+import com.fileshare.app.mapper.DownloadHistoryMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 下载历史写入缓冲
+ * 下载线程只把记录放入有界无锁队列，由后台线程合并为多行INSERT批量写入；
+ * 队列满时按配置的溢出策略处理：block（限时等待）、drop（丢弃）、spill（追加到本地文件，空闲时回放）；
+ * 回放时无法解析的行移入corrupt.log，不影响其余记录
+ */
+@Component
+public class DownloadHistoryBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(DownloadHistoryBuffer.class);
+
+    private static final String PENDING_FILE = "pending.log";
+
+    private static final String REPLAY_PREFIX = "replay-";
+
+    /**
+     * 无法解析的行（如写入时崩溃留下的半行）移到该文件，不阻塞后续回放
+     */
+    private static final String CORRUPT_FILE = "corrupt.log";
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    /**
+     * 队列溢出策略
+     */
+    public enum OverflowPolicy {
+        BLOCK, DROP, SPILL
+    }
+
+    @Autowired
+    private DownloadHistoryMapper downloadHistoryMapper;
+
+    @Value("${file.download-history.capacity:10000}")
+    private int capacity;
+
+    @Value("${file.download-history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${file.download-history.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${file.download-history.overflow-policy:spill}")
+    private String overflowPolicy;
+
+    /**
+     * block策略下单次最长等待时间，超时后丢弃，保证下载线程不会被无限阻塞
+     */
+    @Value("${file.download-history.block-timeout-ms:20}")
+    private long blockTimeoutMs;
+
+    @Value("${file.download-history.spill-directory:./temp/download-history}")
+    private String spillDirectory;
+
+    private final ConcurrentLinkedQueue<DownloadHistory> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 队列长度，ConcurrentLinkedQueue.size()需要遍历，单独计数
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Object spillLock = new Object();
+
+    private final LongAdder acceptedCount = new LongAdder();
+
+    private final LongAdder writtenCount = new LongAdder();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final LongAdder spilledCount = new LongAdder();
+
+    private final LongAdder corruptCount = new LongAdder();
+
+    private OverflowPolicy policy;
+
+    private Path spillDir;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @PostConstruct
+    public void init() throws IOException {
+        policy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase());
+        // 写库失败的记录无论哪种策略都落盘，因此始终准备溢出目录
+        spillDir = Paths.get(spillDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(spillDir);
+
+        running = true;
+        writer = new Thread(this::runWriter, "download-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("下载历史写入缓冲已启动: capacity={}, batchSize={}, overflowPolicy={}",
+                capacity, batchSize, policy);
+    }
+
+    /**
+     * 停机前写入队列中剩余的记录
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<DownloadHistory> batch;
+        while (!(batch = poll()).isEmpty()) {
+            write(batch);
+        }
+        log.info("下载历史写入缓冲已停止: written={}, spilled={}, dropped={}",
+                writtenCount.sum(), spilledCount.sum(), droppedCount.sum());
+    }
+
+    /**
+     * 提交一条下载历史，不会等待数据库
+     *
+     * @param history 下载历史
+     */
+    public void submit(DownloadHistory history) {
+        acceptedCount.increment();
+        if (tryEnqueue(history)) {
+            return;
+        }
+        switch (policy) {
+            case BLOCK:
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+                while (System.nanoTime() < deadline) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    if (tryEnqueue(history)) {
+                        return;
+                    }
+                }
+                droppedCount.increment();
+                break;
+            case SPILL:
+                spill(Collections.singletonList(history));
+                break;
+            default:
+                droppedCount.increment();
+        }
+    }
+
+    /**
+     * 缓冲统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("overflowPolicy", policy.name().toLowerCase());
+        stats.put("queued", size.get());
+        stats.put("capacity", capacity);
+        stats.put("acceptedCount", acceptedCount.sum());
+        stats.put("writtenCount", writtenCount.sum());
+        stats.put("spilledCount", spilledCount.sum());
+        stats.put("droppedCount", droppedCount.sum());
+        stats.put("corruptCount", corruptCount.sum());
+        return stats;
+    }
+
+    private boolean tryEnqueue(DownloadHistory history) {
+        int current = size.incrementAndGet();
+        if (current > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        queue.offer(history);
+        if (current == batchSize) {
+            // 攒够一批立即唤醒写入线程，不必等到下个周期
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    private List<DownloadHistory> poll() {
+        List<DownloadHistory> batch = new ArrayList<>(Math.min(batchSize, Math.max(size.get(), 1)));
+        DownloadHistory history;
+        while (batch.size() < batchSize && (history = queue.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(history);
+        }
+        return batch;
+    }
+
+    /**
+     * 后台写入循环：有数据就批量写入，不足一批时等待一个周期；队列空闲时回放溢出文件
+     */
+    private void runWriter() {
+        while (running) {
+            try {
+                List<DownloadHistory> batch = poll();
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+                if (batch.size() < batchSize) {
+                    if (batch.isEmpty()) {
+                        replaySpilled();
+                    }
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+                }
+            } catch (Exception e) {
+                log.error("下载历史写入线程异常: {}", e.getMessage(), e);
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(flushIntervalMs));
+            }
+        }
+    }
+
+    /**
+     * 批量写入，失败时落盘等待回放
+     */
+    private void write(List<DownloadHistory> batch) {
+        try {
+            downloadHistoryMapper.insertBatch(batch);
+            writtenCount.add(batch.size());
+            log.debug("写入下载历史: {} 条", batch.size());
+        } catch (Exception e) {
+            log.error("写入下载历史失败，转存本地文件: {}", e.getMessage());
+            spill(batch);
+        }
+    }
+
+    /**
+     * 追加到溢出文件
+     */
+    private void spill(List<DownloadHistory> histories) {
+        synchronized (spillLock) {
+            try (BufferedWriter out = Files.newBufferedWriter(spillDir.resolve(PENDING_FILE), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (DownloadHistory history : histories) {
+                    out.write(format(history));
+                    out.newLine();
+                }
+                spilledCount.add(histories.size());
+            } catch (IOException e) {
+                log.error("下载历史落盘失败，丢弃 {} 条: {}", histories.size(), e.getMessage());
+                droppedCount.add(histories.size());
+            }
+        }
+    }
+
+    /**
+     * 回放溢出文件：先把pending文件改名冻结，再逐个回放，上次未完成的回放文件一并处理
+     */
+    private void replaySpilled() throws IOException {
+        Path pending = spillDir.resolve(PENDING_FILE);
+        synchronized (spillLock) {
+            if (Files.exists(pending)) {
+                Files.move(pending, spillDir.resolve(REPLAY_PREFIX + System.currentTimeMillis() + ".log"),
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, REPLAY_PREFIX + "*.log")) {
+            for (Path file : files) {
+                if (!replay(file)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 回放单个文件，中途失败时把未写入的部分写回文件，下次从断点继续
+     *
+     * @return 是否全部回放成功
+     */
+    private boolean replay(Path file) throws IOException {
+        List<DownloadHistory> batch = new ArrayList<>(batchSize);
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                DownloadHistory history = parse(line);
+                if (history == null) {
+                    quarantine(file, line);
+                    continue;
+                }
+                batch.add(history);
+                if (batch.size() >= batchSize) {
+                    if (!replayBatch(batch)) {
+                        keepRemaining(file, batch, reader);
+                        return false;
+                    }
+                    replayed += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                if (!replayBatch(batch)) {
+                    keepRemaining(file, batch, reader);
+                    return false;
+                }
+                replayed += batch.size();
+            }
+        }
+        Files.delete(file);
+        log.info("回放落盘的下载历史: {} 条", replayed);
+        return true;
+    }
+
+    private boolean replayBatch(List<DownloadHistory> batch) {
+        try {
+            downloadHistoryMapper.insertBatch(batch);
+            writtenCount.add(batch.size());
+            return true;
+        } catch (Exception e) {
+            log.warn("回放下载历史失败，稍后重试: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 把失败批次和文件剩余内容写入临时文件，再原子替换原文件
+     */
+    private void keepRemaining(Path file, List<DownloadHistory> failed, BufferedReader reader) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (DownloadHistory history : failed) {
+                out.write(format(history));
+                out.newLine();
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 把无法解析的行追加到隔离文件，保留原文以便人工处理
+     */
+    private void quarantine(Path file, String line) throws IOException {
+        log.warn("跳过无法解析的下载历史: file={}, line={}", file.getFileName(), line);
+        try (BufferedWriter out = Files.newBufferedWriter(spillDir.resolve(CORRUPT_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(line);
+            out.newLine();
+        }
+        corruptCount.increment();
+    }
+
+    private static String format(DownloadHistory history) {
+        return history.getFileId() + FIELD_SEPARATOR + history.getUserId() + FIELD_SEPARATOR
+                + history.getDownloadTime() + FIELD_SEPARATOR + history.getDownloadIp();
+    }
+
+    /**
+     * @return 下载历史，格式错误时返回null
+     */
+    private static DownloadHistory parse(String line) {
+        String[] fields = line.split(FIELD_SEPARATOR, -1);
+        if (fields.length != 4) {
+            return null;
+        }
+        try {
+            DownloadHistory history = new DownloadHistory();
+            history.setFileId(Long.valueOf(fields[0]));
+            history.setUserId(Long.valueOf(fields[1]));
+            history.setDownloadTime(LocalDateTime.parse(fields[2]));
+            history.setDownloadIp("null".equals(fields[3]) ? null : fields[3]);
+            return history;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.fileshare.app.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.mapper.FileInfoMapper;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有效提取码布隆过滤器
+ * 判定不存在的提取码直接拒绝，不再查询数据库。布隆过滤器不支持删除，
+ * 已删除/过期/重置前的旧提取码只会造成误判（落到数据库和负缓存），由定期重建清除；
+ * 重建在后台线程完成后整体替换，期间照常服务，新增的提取码同时写入新旧两个过滤器。
+ * 使用Guava的BloomFilter，put和mightContain可以并发调用（位数组基于CAS，无锁）
+ */
+@Component
+public class ExtractCodeFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtractCodeFilter.class);
+
+    /**
+     * 重建时每次扫描的行数
+     */
+    private static final int SCAN_BATCH_SIZE = 5000;
+
+    @Autowired
+    private FileInfoMapper fileInfoMapper;
+
+    @Value("${file.bloom-filter.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 预期提取码数量，实际数量更多时按实际数量的两倍扩容
+     */
+    @Value("${file.bloom-filter.expected-insertions:1000000}")
+    private long expectedInsertions;
+
+    @Value("${file.bloom-filter.fpp:0.01}")
+    private double fpp;
+
+    /**
+     * 增量同步时向前多查的秒数。水位和update_time都取数据库时间，不受节点时钟偏差影响，
+     * 但update_time在事务提交前就已确定，重叠窗口需覆盖写入到提交的耗时
+     */
+    @Value("${file.bloom-filter.sync-overlap-seconds:10}")
+    private long syncOverlapSeconds;
+
+    private volatile BloomFilter<CharSequence> current;
+
+    /**
+     * 正在重建的过滤器，重建期间新增的提取码同时写入
+     */
+    private volatile BloomFilter<CharSequence> building;
+
+    /**
+     * 上次同步时的数据库时间
+     */
+    private volatile LocalDateTime lastSyncTime;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder passedCount = new LongAdder();
+
+    private final LongAdder falsePositiveCount = new LongAdder();
+
+    private ExecutorService rebuildExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("提取码布隆过滤器未启用");
+            return;
+        }
+        rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "extract-code-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 首次构建在后台进行，完成前所有提取码都放行
+        rebuildExecutor.execute(this::rebuild);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提取码是否可能有效
+     *
+     * @param extractCode 提取码
+     * @return false表示一定无效
+     */
+    public boolean mightContain(String extractCode) {
+        BloomFilter<CharSequence> filter = current;
+        if (filter == null) {
+            return true;
+        }
+        if (filter.mightContain(extractCode)) {
+            passedCount.increment();
+            return true;
+        }
+        rejectedCount.increment();
+        return false;
+    }
+
+    /**
+     * 登记新的提取码（上传、重置提取码时调用）
+     *
+     * @param extractCode 提取码
+     */
+    public void put(String extractCode) {
+        // 先写正在重建的过滤器再读current：重建完成时先替换current再清空building，
+        // 无论替换发生在哪一步，新过滤器都能收到这个提取码
+        BloomFilter<CharSequence> next = building;
+        if (next != null) {
+            next.put(extractCode);
+        }
+        BloomFilter<CharSequence> filter = current;
+        if (filter != null && filter != next) {
+            filter.put(extractCode);
+        }
+    }
+
+    /**
+     * 记录一次误判：过滤器放行但提取码不存在（包括命中负缓存的情况）
+     */
+    public void recordFalsePositive() {
+        if (current != null) {
+            falsePositiveCount.increment();
+        }
+    }
+
+    /**
+     * 定期重建，清除已删除、过期和重置前的旧提取码
+     */
+    @Scheduled(initialDelayString = "${file.bloom-filter.rebuild-interval-ms:21600000}",
+            fixedDelayString = "${file.bloom-filter.rebuild-interval-ms:21600000}")
+    public void scheduledRebuild() {
+        if (enabled) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * 增量同步其他实例新增或重置的提取码
+     */
+    @Scheduled(fixedDelayString = "${file.bloom-filter.sync-interval-ms:2000}")
+    public void syncRecent() {
+        LocalDateTime since = lastSyncTime;
+        if (!enabled || since == null || current == null) {
+            return;
+        }
+        LocalDateTime now = fileInfoMapper.selectDatabaseTime();
+        for (FileInfo fileInfo : fileInfoMapper.selectChangedSince(since.minusSeconds(syncOverlapSeconds))) {
+            if (Integer.valueOf(1).equals(fileInfo.getStatus())) {
+                put(fileInfo.getExtractCode());
+            }
+        }
+        lastSyncTime = now;
+    }
+
+    /**
+     * 统计信息，包括理论误判率和实际观测到的误判率
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        BloomFilter<CharSequence> filter = current;
+        stats.put("ready", filter != null);
+        if (filter == null) {
+            return stats;
+        }
+        long passed = passedCount.sum();
+        long falsePositives = falsePositiveCount.sum();
+        stats.put("insertions", filter.approximateElementCount());
+        stats.put("expectedFpp", filter.expectedFpp());
+        stats.put("rejectedCount", rejectedCount.sum());
+        stats.put("passedCount", passed);
+        stats.put("falsePositiveCount", falsePositives);
+        stats.put("observedFpp", passed == 0 ? 0.0 : (double) falsePositives / passed);
+        return stats;
+    }
+
+    /**
+     * 按id分批扫描有效文件，构建新过滤器后整体替换
+     */
+    private void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            LocalDateTime syncFrom = fileInfoMapper.selectDatabaseTime();
+            Long total = fileInfoMapper.selectCount(new LambdaQueryWrapper<>());
+            BloomFilter<CharSequence> next = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                    Math.max(expectedInsertions, total * 2), fpp);
+            building = next;
+
+            long lastId = 0;
+            while (true) {
+                LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+                wrapper.select(FileInfo::getId, FileInfo::getExtractCode);
+                wrapper.gt(FileInfo::getId, lastId);
+                wrapper.orderByAsc(FileInfo::getId);
+                wrapper.last("LIMIT " + SCAN_BATCH_SIZE);
+                List<FileInfo> batch = fileInfoMapper.selectList(wrapper);
+                for (FileInfo fileInfo : batch) {
+                    next.put(fileInfo.getExtractCode());
+                }
+                if (batch.size() < SCAN_BATCH_SIZE) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+
+            current = next;
+            building = null;
+            if (lastSyncTime == null) {
+                lastSyncTime = syncFrom;
+            }
+            log.info("提取码布隆过滤器已重建: codes={}, expectedFpp={}, cost={}ms",
+                    next.approximateElementCount(), next.expectedFpp(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            building = null;
+            log.error("重建提取码布隆过滤器失败: {}", e.getMessage(), e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.mapper.FileInfoMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 提取码 -> 文件信息缓存
+ * 存在的文件最多缓存到其过期时间，不存在的提取码短暂缓存，避免反复查询数据库；
+ * 本节点的修改在事务提交后立即失效，其他节点的删除、重置和新增按update_time增量同步后失效，
+ * 最多滞后一个同步间隔；缓存的FileInfo由多个请求共享，调用方不得修改
+ */
+@Component
+public class FileInfoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FileInfoCache.class);
+
+    /**
+     * 不存在的提取码的占位值
+     */
+    private static final FileInfo NOT_FOUND = new FileInfo();
+
+    @Autowired
+    private FileInfoMapper fileInfoMapper;
+
+    @Value("${file.info-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.info-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${file.info-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${file.info-cache.negative-ttl-seconds:30}")
+    private long negativeTtlSeconds;
+
+    /**
+     * 增量同步时向前多查的秒数，覆盖事务从写入update_time到提交的耗时，
+     * 并使同步期间加载的旧数据在之后几轮被再次失效
+     */
+    @Value("${file.info-cache.sync-overlap-seconds:10}")
+    private long syncOverlapSeconds;
+
+    private Cache<String, FileInfo> cache;
+
+    /**
+     * 上次同步时的数据库时间
+     */
+    private volatile LocalDateTime lastSyncTime;
+
+    private final LongAdder negativeHitCount = new LongAdder();
+
+    private final LongAdder syncInvalidationCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("文件信息缓存未启用");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, FileInfo>() {
+                    @Override
+                    public long expireAfterCreate(String key, FileInfo value, long currentTime) {
+                        return expireNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, FileInfo value, long currentTime, long currentDuration) {
+                        return expireNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, FileInfo value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        log.info("文件信息缓存已启用: maxSize={}, ttl={}s, negativeTtl={}s", maxSize, ttlSeconds, negativeTtlSeconds);
+    }
+
+    /**
+     * 按提取码获取文件信息，未命中时调用loader查询（同一提取码并发未命中只查询一次）
+     *
+     * @param extractCode 提取码
+     * @param loader 数据库查询，未找到时返回null
+     * @return 文件信息，不存在时返回null
+     */
+    public FileInfo get(String extractCode, Function<String, FileInfo> loader) {
+        if (!enabled) {
+            return loader.apply(extractCode);
+        }
+        FileInfo fileInfo = cache.get(extractCode, code -> {
+            FileInfo loaded = loader.apply(code);
+            return loaded != null ? loaded : NOT_FOUND;
+        });
+        if (fileInfo == NOT_FOUND) {
+            negativeHitCount.increment();
+            return null;
+        }
+        return fileInfo;
+    }
+
+    /**
+     * 使提取码失效，在当前事务提交后执行，避免并发请求把提交前的旧数据重新放回缓存
+     *
+     * @param extractCode 提取码
+     */
+    public void invalidateAfterCommit(String extractCode) {
+        if (!enabled || extractCode == null) {
+            return;
+        }
+        cache.invalidate(extractCode);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(extractCode);
+                }
+            });
+        }
+    }
+
+    /**
+     * 增量同步其他节点的修改：变更过的文件按ID失效，新出现的提取码清除负缓存
+     */
+    @Scheduled(fixedDelayString = "${file.info-cache.sync-interval-ms:2000}")
+    public void syncRecent() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = fileInfoMapper.selectDatabaseTime();
+        LocalDateTime since = lastSyncTime;
+        lastSyncTime = now;
+        if (since == null) {
+            // 首次同步从一个重叠窗口之前开始，覆盖启动后到首次同步之间加载的数据
+            since = now;
+        }
+        List<FileInfo> changed = fileInfoMapper.selectChangedSince(since.minusSeconds(syncOverlapSeconds));
+        if (changed.isEmpty() || cache.estimatedSize() == 0) {
+            return;
+        }
+        Set<Long> fileIds = new HashSet<>();
+        Set<String> codes = new HashSet<>();
+        for (FileInfo fileInfo : changed) {
+            fileIds.add(fileInfo.getId());
+            codes.add(fileInfo.getExtractCode());
+        }
+        cache.asMap().entrySet().removeIf(entry -> {
+            boolean stale = codes.contains(entry.getKey()) || fileIds.contains(entry.getValue().getId());
+            if (stale) {
+                syncInvalidationCount.increment();
+            }
+            return stale;
+        });
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        CacheStats cacheStats = cache.stats();
+        stats.put("entries", cache.estimatedSize());
+        stats.put("maxSize", maxSize);
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("negativeHitCount", negativeHitCount.sum());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        stats.put("syncInvalidationCount", syncInvalidationCount.sum());
+        return stats;
+    }
+
+    /**
+     * 存在的文件：TTL与剩余有效期取较小值；不存在的提取码：使用短TTL
+     */
+    private long expireNanos(FileInfo value) {
+        if (value == NOT_FOUND) {
+            return TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        }
+        long ttl = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        if (value.getExpireTime() == null) {
+            return ttl;
+        }
+        long remaining = Duration.between(LocalDateTime.now(), value.getExpireTime()).toNanos();
+        return Math.max(0, Math.min(ttl, remaining));
+    }
+}
@@ -0,0 +1,366 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.config.MinioConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点对象本地磁盘缓存
+ * 以storage_path为键缓存MinIO对象，按总字节数限容（Caffeine W-TinyLFU淘汰），
+ * 命中且容器支持sendfile时由内核直接把文件写入socket，否则由调用方按缓冲区读取输出。
+ * 每次加载写入带代次后缀的新文件，淘汰后延迟删除的旧文件不会与重新加载的文件同名
+ */
+@Component
+public class ObjectDiskCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectDiskCache.class);
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 文件名与代次之间的分隔符，URLEncoder不会编码'.'，按最后一个分隔符拆分
+     */
+    private static final char GENERATION_SEPARATOR = '.';
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @Autowired
+    private MinioConfig minioConfig;
+
+    @Value("${file.disk-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.disk-cache.directory:./temp/cache}")
+    private String directory;
+
+    @Value("${file.disk-cache.max-size:2GB}")
+    private DataSize maxSize;
+
+    @Value("${file.disk-cache.max-entry-size:100MB}")
+    private DataSize maxEntrySize;
+
+    /**
+     * 淘汰后延迟删除文件的秒数，避免删除正在被sendfile读取的文件
+     */
+    @Value("${file.disk-cache.delete-delay-seconds:60}")
+    private long deleteDelaySeconds;
+
+    private Path cacheDir;
+
+    private Cache<String, CachedObject> index;
+
+    private final Map<String, Boolean> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder bytesServed = new LongAdder();
+
+    private final LongAdder fillCount = new LongAdder();
+
+    /**
+     * 缓存文件代次，以启动时间起始，重启后也不会与已有文件重名
+     */
+    private final AtomicLong generation = new AtomicLong(System.currentTimeMillis());
+
+    private ThreadPoolExecutor fillExecutor;
+
+    private ScheduledExecutorService deleteExecutor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("本地磁盘缓存未启用");
+            return;
+        }
+        cacheDir = Paths.get(directory).toAbsolutePath().normalize();
+        Files.createDirectories(cacheDir);
+
+        index = Caffeine.newBuilder()
+                .maximumWeight(toKilobytes(maxSize.toBytes()))
+                .weigher((String key, CachedObject value) -> (int) Math.min(Integer.MAX_VALUE, toKilobytes(value.getLength())))
+                .removalListener((String key, CachedObject value, RemovalCause cause) -> {
+                    if (value != null) {
+                        scheduleDelete(key, value.getPath());
+                    }
+                })
+                .recordStats()
+                .build();
+
+        fillExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(64), r -> {
+                    Thread thread = new Thread(r, "disk-cache-fill");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+        deleteExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "disk-cache-delete");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        reloadExistingFiles();
+        log.info("本地磁盘缓存已启用: directory={}, maxSize={}MB, entries={}",
+                cacheDir, maxSize.toMegabytes(), index.estimatedSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fillExecutor != null) {
+            fillExecutor.shutdownNow();
+        }
+        if (deleteExecutor != null) {
+            deleteExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 查询缓存文件
+     *
+     * @param storagePath 存储路径
+     * @param expectedLength 期望的文件大小
+     * @return 缓存文件路径，未命中返回null
+     */
+    public Path lookup(String storagePath, long expectedLength) {
+        if (!enabled) {
+            return null;
+        }
+        CachedObject cached = index.getIfPresent(storagePath);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.getLength() != expectedLength || !Files.isRegularFile(cached.getPath())) {
+            index.invalidate(storagePath);
+            return null;
+        }
+        return cached.getPath();
+    }
+
+    /**
+     * 记录由缓存输出的字节数（即节省的MinIO流量）
+     */
+    public void recordServed(long bytes) {
+        bytesServed.add(bytes);
+    }
+
+    /**
+     * 异步把对象加载到缓存，同一对象同时只加载一次，队列满时直接放弃
+     *
+     * @param storagePath 存储路径
+     * @param length 对象大小
+     */
+    public void loadAsync(String storagePath, long length) {
+        if (!enabled || length <= 0 || length > maxEntrySize.toBytes()) {
+            return;
+        }
+        // 调用方刚经lookup记过一次未命中，这里不再经过统计
+        if (index.asMap().containsKey(storagePath) || loading.putIfAbsent(storagePath, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            fillExecutor.execute(() -> {
+                try {
+                    load(storagePath, length);
+                } finally {
+                    loading.remove(storagePath);
+                }
+            });
+        } catch (RuntimeException e) {
+            loading.remove(storagePath);
+        }
+    }
+
+    /**
+     * 使缓存失效（对象被删除时调用）
+     *
+     * @param storagePath 存储路径
+     */
+    public void invalidate(String storagePath) {
+        if (enabled) {
+            index.invalidate(storagePath);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        CacheStats cacheStats = index.stats();
+        stats.put("entries", index.estimatedSize());
+        stats.put("sizeBytes", index.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L) * 1024).orElse(0L));
+        stats.put("maxSizeBytes", maxSize.toBytes());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        stats.put("bytesSaved", bytesServed.sum());
+        stats.put("fillCount", fillCount.sum());
+        return stats;
+    }
+
+    /**
+     * 从MinIO下载对象到缓存目录，先写临时文件再原子改名
+     */
+    private void load(String storagePath, long length) {
+        Path target = cacheDir.resolve(encodeFileName(storagePath) + GENERATION_SEPARATOR + generation.incrementAndGet());
+        Path temp = cacheDir.resolve(target.getFileName() + TEMP_SUFFIX);
+        try (InputStream inputStream = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(minioConfig.getBucketName())
+                        .object(storagePath)
+                        .build())) {
+            long copied = Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (copied != length) {
+                log.warn("缓存对象大小不一致，放弃缓存: storagePath={}, expected={}, actual={}",
+                        storagePath, length, copied);
+                Files.deleteIfExists(temp);
+                return;
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            index.put(storagePath, new CachedObject(target, length));
+            fillCount.increment();
+            log.debug("对象已加入磁盘缓存: storagePath={}, size={}", storagePath, length);
+        } catch (Exception e) {
+            log.warn("加载对象到磁盘缓存失败: storagePath={}, error={}", storagePath, e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // 临时文件会在下次启动时清理
+            }
+        }
+    }
+
+    /**
+     * 启动时恢复已有的缓存文件，清理未完成的临时文件和没有代次的文件；
+     * 同一对象有多个文件时（上次退出前未来得及延迟删除）保留代次最大的
+     */
+    private void reloadExistingFiles() throws IOException {
+        Map<String, Long> generations = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                int separator = fileName.lastIndexOf(GENERATION_SEPARATOR);
+                long fileGeneration = separator < 0 ? -1 : parseGeneration(fileName.substring(separator + 1));
+                if (fileName.endsWith(TEMP_SUFFIX) || fileGeneration < 0 || !Files.isRegularFile(file)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                String storagePath = decodeFileName(fileName.substring(0, separator));
+                Long existing = generations.get(storagePath);
+                if (existing != null && existing > fileGeneration) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                generations.put(storagePath, fileGeneration);
+                // 替换掉的旧文件由淘汰监听器延迟删除
+                index.put(storagePath, new CachedObject(file, Files.size(file)));
+            }
+        }
+    }
+
+    private static long parseGeneration(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 延迟删除被淘汰的缓存文件；到期时若索引仍指向该文件（已重新加入缓存）则不删除
+     */
+    private void scheduleDelete(String storagePath, Path path) {
+        deleteExecutor.schedule(() -> {
+            CachedObject current = index.asMap().get(storagePath);
+            if (current != null && current.getPath().equals(path)) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("删除缓存文件失败: {}", path, e);
+            }
+        }, deleteDelaySeconds, TimeUnit.SECONDS);
+    }
+
+    private static long toKilobytes(long bytes) {
+        return (bytes + 1023) / 1024;
+    }
+
+    private static String encodeFileName(String storagePath) {
+        try {
+            return URLEncoder.encode(storagePath, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decodeFileName(String fileName) {
+        try {
+            return URLDecoder.decode(fileName, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 缓存条目
+     */
+    private static class CachedObject {
+
+        private final Path path;
+
+        private final long length;
+
+        CachedObject(Path path, long length) {
+            this.path = path;
+            this.length = length;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        long getLength() {
+            return length;
+        }
+    }
+}
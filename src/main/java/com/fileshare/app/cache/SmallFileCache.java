@@ -0,0 +1,177 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.config.MinioConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 小文件内存缓存
+ * 文件内容存放在堆外内存（DirectByteBuffer），堆内只保留很小的引用对象，缓存再大也不增加GC压力；
+ * 准入和淘汰由Caffeine的W-TinyLFU负责，一次性的批量访问无法把热点数据挤出缓存。
+ * 未命中时内容读到堆内直接输出，同一文件在准入窗口内再次未命中才复制到堆外放入缓存，
+ * 避免每次未命中都申请堆外内存：堆外内存只能等GC回收，大量一次性访问会使其占用远超缓存上限
+ */
+@Component
+public class SmallFileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SmallFileCache.class);
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @Autowired
+    private MinioConfig minioConfig;
+
+    @Value("${file.memory-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 缓存占用的堆外内存上限，需小于JVM的-XX:MaxDirectMemorySize
+     */
+    @Value("${file.memory-cache.max-size:64MB}")
+    private DataSize maxSize;
+
+    @Value("${file.memory-cache.max-entry-size:256KB}")
+    private DataSize maxEntrySize;
+
+    /**
+     * 准入窗口记录的最近未命中文件数，只保存键
+     */
+    @Value("${file.memory-cache.admission-window:10000}")
+    private long admissionWindow;
+
+    private Cache<String, ByteBuffer> cache;
+
+    /**
+     * 最近未命中过一次的文件
+     */
+    private Cache<String, Boolean> recentMisses;
+
+    private final LongAdder admittedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("小文件内存缓存未启用");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, ByteBuffer value) -> value.capacity())
+                .recordStats()
+                .build();
+        recentMisses = Caffeine.newBuilder()
+                .maximumSize(admissionWindow)
+                .build();
+        log.info("小文件内存缓存已启用: maxSize={}MB, maxEntrySize={}KB",
+                maxSize.toMegabytes(), maxEntrySize.toKilobytes());
+    }
+
+    /**
+     * 是否属于可缓存的小文件
+     *
+     * @param length 文件大小
+     */
+    public boolean accepts(long length) {
+        return enabled && length > 0 && length <= maxEntrySize.toBytes();
+    }
+
+    /**
+     * 获取缓存内容，未命中时从MinIO读取到堆内；第二次未命中时复制到堆外并尝试放入缓存（是否保留由TinyLFU决定）
+     *
+     * @param storagePath 存储路径
+     * @param length 文件大小
+     * @return 只读的内容视图，调用方可自由修改position/limit
+     */
+    public ByteBuffer get(String storagePath, long length) throws Exception {
+        ByteBuffer cached = cache.getIfPresent(storagePath);
+        if (cached != null && cached.capacity() == length) {
+            return cached.duplicate();
+        }
+
+        ByteBuffer content = load(storagePath, (int) length);
+        if (recentMisses.asMap().remove(storagePath) == null) {
+            recentMisses.put(storagePath, Boolean.TRUE);
+            return content;
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(content.remaining());
+        direct.put(content.duplicate());
+        direct.flip();
+        cache.put(storagePath, direct.asReadOnlyBuffer());
+        admittedCount.increment();
+        return content;
+    }
+
+    /**
+     * 使缓存失效（对象被删除时调用）
+     *
+     * @param storagePath 存储路径
+     */
+    public void invalidate(String storagePath) {
+        if (enabled) {
+            cache.invalidate(storagePath);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        CacheStats cacheStats = cache.stats();
+        stats.put("entries", cache.estimatedSize());
+        stats.put("sizeBytes", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        stats.put("maxSizeBytes", maxSize.toBytes());
+        stats.put("maxEntryBytes", maxEntrySize.toBytes());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        stats.put("admittedCount", admittedCount.sum());
+        return stats;
+    }
+
+    /**
+     * 从MinIO读取完整对象到堆内
+     */
+    private ByteBuffer load(String storagePath, int length) throws Exception {
+        byte[] content = new byte[length];
+        int offset = 0;
+        try (InputStream inputStream = minioClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(minioConfig.getBucketName())
+                        .object(storagePath)
+                        .build())) {
+            int len;
+            while (offset < length && (len = inputStream.read(content, offset, length - offset)) > 0) {
+                offset += len;
+            }
+        }
+        if (offset < length) {
+            throw new IOException("对象长度与记录不一致: " + storagePath);
+        }
+        return ByteBuffer.wrap(content).asReadOnlyBuffer();
+    }
+}
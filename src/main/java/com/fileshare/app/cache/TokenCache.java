@@ -0,0 +1,136 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.util.JwtUtil.TokenClaims;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 已验证token缓存
+ * 以token的SHA-256摘要为键（不在内存中保留原始token），缓存到token的过期时间为止，
+ * 同一客户端的后续请求不再重复验签和解析；验证失败的token不缓存，避免被无效token占满
+ */
+@Component
+public class TokenCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCache.class);
+
+    @Value("${jwt.token-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jwt.token-cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, TokenClaims> cache;
+
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("token缓存未启用");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, TokenClaims>() {
+                    @Override
+                    public long expireAfterCreate(String key, TokenClaims value, long currentTime) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, TokenClaims value, long currentTime, long currentDuration) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, TokenClaims value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        log.info("token缓存已启用: maxSize={}", maxSize);
+    }
+
+    /**
+     * 获取token的声明信息，未命中时调用verifier验证
+     *
+     * @param token JWT令牌
+     * @param verifier 验证并解析token，无效时返回null
+     * @return 声明信息，token无效时返回null
+     */
+    public TokenClaims get(String token, Function<String, TokenClaims> verifier) {
+        if (!enabled) {
+            return verifier.apply(token);
+        }
+        String key = digest(token);
+        TokenClaims claims = cache.getIfPresent(key);
+        if (claims != null) {
+            // 过期清理有时间粒度，命中时再确认一次
+            if (claims.getExpiration() > System.currentTimeMillis()) {
+                return claims;
+            }
+            cache.invalidate(key);
+            return null;
+        }
+        claims = verifier.apply(token);
+        if (claims != null) {
+            cache.put(key, claims);
+        }
+        return claims;
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        CacheStats cacheStats = cache.stats();
+        stats.put("entries", cache.estimatedSize());
+        stats.put("maxSize", maxSize);
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
+
+    private String digest(String token) {
+        MessageDigest digest = digests.get();
+        digest.reset();
+        byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static long remainingNanos(TokenClaims value) {
+        long remaining = value.getExpiration() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+    }
+}
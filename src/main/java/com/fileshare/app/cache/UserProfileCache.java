@@ -0,0 +1,153 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.entity.User;
+import com.fileshare.app.mapper.UserMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户ID -> 用户资料缓存
+ * 包含已禁用的用户，鉴权时据此拒绝被禁用的账号；不存在的用户短暂缓存。
+ * 通过接口修改资料时主动失效，直接在数据库中修改（如封禁）最迟在TTL后生效；
+ * 返回的是副本，调用方可以修改
+ */
+@Component
+public class UserProfileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProfileCache.class);
+
+    /**
+     * 不存在的用户的占位值
+     */
+    private static final User NOT_FOUND = new User();
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Value("${user.profile-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${user.profile-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${user.profile-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${user.profile-cache.negative-ttl-seconds:10}")
+    private long negativeTtlSeconds;
+
+    private Cache<Long, User> cache;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("用户资料缓存未启用");
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<Long, User>() {
+                    @Override
+                    public long expireAfterCreate(Long key, User value, long currentTime) {
+                        return expireNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long key, User value, long currentTime, long currentDuration) {
+                        return expireNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long key, User value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        log.info("用户资料缓存已启用: maxSize={}, ttl={}s, negativeTtl={}s", maxSize, ttlSeconds, negativeTtlSeconds);
+    }
+
+    /**
+     * 获取用户资料（同一用户并发未命中只查询一次）
+     *
+     * @param userId 用户ID
+     * @return 用户资料副本，包括已禁用的用户；不存在时返回null
+     */
+    public User get(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        if (!enabled) {
+            return userMapper.selectByIdIncludingDisabled(userId);
+        }
+        User user = cache.get(userId, id -> {
+            User loaded = userMapper.selectByIdIncludingDisabled(id);
+            return loaded != null ? loaded : NOT_FOUND;
+        });
+        return user == NOT_FOUND ? null : copy(user);
+    }
+
+    /**
+     * 使用户资料失效，在当前事务提交后再执行一次，避免并发请求把提交前的旧数据重新放回缓存
+     *
+     * @param userId 用户ID
+     */
+    public void invalidateAfterCommit(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        CacheStats cacheStats = cache.stats();
+        stats.put("entries", cache.estimatedSize());
+        stats.put("maxSize", maxSize);
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        return stats;
+    }
+
+    private long expireNanos(User value) {
+        return TimeUnit.SECONDS.toNanos(value == NOT_FOUND ? negativeTtlSeconds : ttlSeconds);
+    }
+
+    private static User copy(User source) {
+        User target = new User();
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+}
@@ -0,0 +1,249 @@
+package com.fileshare.app.cache;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.fileshare.app.util.WxApiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 微信接口调用凭证（access_token）缓存
+ * 缓存到expires_in前的提前量为止，后台定时提前刷新；缓存失效时并发请求只触发一次刷新，
+ * 其余请求等待刷新结果。使用stable_token接口，多个节点各自获取时拿到的是同一个凭证，不会互相顶掉；
+ * 凭证被微信提前作废时使用force_refresh强制换新，强制刷新有每日次数限制，按最小间隔限流
+ */
+@Component
+public class WxAccessTokenCache {
+
+    private static final Logger log = LoggerFactory.getLogger(WxAccessTokenCache.class);
+
+    @Value("${wechat.appid}")
+    private String appId;
+
+    @Value("${wechat.secret}")
+    private String secret;
+
+    @Autowired
+    private WxApiClient wxApiClient;
+
+    /**
+     * 提前刷新量，凭证剩余有效期小于该值时视为需要刷新
+     */
+    @Value("${wechat.access-token.refresh-ahead-seconds:300}")
+    private long refreshAheadSeconds;
+
+    /**
+     * 等待其他线程刷新的最长时间
+     */
+    @Value("${wechat.access-token.wait-timeout-ms:5000}")
+    private long waitTimeoutMs;
+
+    /**
+     * 两次强制刷新的最小间隔
+     */
+    @Value("${wechat.access-token.force-refresh-interval-seconds:60}")
+    private long forceRefreshIntervalSeconds;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile CachedToken cached;
+
+    /**
+     * 下次允许强制刷新的时间，只在持有refreshLock时读写
+     */
+    private long nextForceRefreshAt;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder refreshCount = new LongAdder();
+
+    private final LongAdder refreshFailureCount = new LongAdder();
+
+    private final LongAdder forceRefreshCount = new LongAdder();
+
+    /**
+     * 获取有效的access_token
+     *
+     * @return access_token，获取失败时返回null
+     */
+    public String getAccessToken() {
+        CachedToken token = cached;
+        if (token != null && token.isFresh()) {
+            hitCount.increment();
+            return token.value;
+        }
+        return refresh(token);
+    }
+
+    /**
+     * 微信返回凭证无效（如40001、42001）时调用：丢弃被拒绝的凭证并强制刷新。
+     * 普通刷新在有效期内只会返回同一个凭证，必须使用force_refresh；
+     * 其他线程已经换新时直接使用新凭证，距上次强制刷新不足最小间隔时不再请求
+     *
+     * @param rejectedToken 被拒绝的凭证
+     * @return 新的access_token，无法换新时返回null
+     */
+    public String renew(String rejectedToken) {
+        if (!lock()) {
+            return null;
+        }
+        try {
+            CachedToken current = cached;
+            if (current != null && !current.value.equals(rejectedToken) && current.isFresh()) {
+                return current.value;
+            }
+            cached = null;
+            long now = System.currentTimeMillis();
+            if (now < nextForceRefreshAt) {
+                log.warn("微信access_token被拒绝，距上次强制刷新不足 {} 秒，暂不刷新", forceRefreshIntervalSeconds);
+                return null;
+            }
+            nextForceRefreshAt = now + TimeUnit.SECONDS.toMillis(forceRefreshIntervalSeconds);
+            log.warn("微信access_token被拒绝，强制刷新");
+            forceRefreshCount.increment();
+            CachedToken fetched = fetch(true);
+            if (fetched == null || fetched.value.equals(rejectedToken)) {
+                return null;
+            }
+            cached = fetched;
+            return fetched.value;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 后台提前刷新，避免凭证到期时由登录请求承担刷新耗时
+     */
+    @Scheduled(fixedDelayString = "${wechat.access-token.check-interval-ms:60000}")
+    public void refreshIfNeeded() {
+        CachedToken token = cached;
+        if (token == null || !token.isFresh()) {
+            refresh(token);
+        }
+    }
+
+    /**
+     * 统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        CachedToken token = cached;
+        stats.put("cached", token != null);
+        if (token != null) {
+            stats.put("expiresInSeconds", TimeUnit.MILLISECONDS.toSeconds(token.expireAt - System.currentTimeMillis()));
+        }
+        stats.put("hitCount", hitCount.sum());
+        stats.put("refreshCount", refreshCount.sum());
+        stats.put("refreshFailureCount", refreshFailureCount.sum());
+        stats.put("forceRefreshCount", forceRefreshCount.sum());
+        return stats;
+    }
+
+    /**
+     * 单飞刷新：拿到锁的线程请求微信，其余线程等待后直接使用其结果
+     *
+     * @param stale 调用方看到的旧凭证
+     */
+    private String refresh(CachedToken stale) {
+        if (!lock()) {
+            return usable(cached);
+        }
+        try {
+            CachedToken current = cached;
+            if (current != null && current != stale && current.isFresh()) {
+                return current.value;
+            }
+            CachedToken fetched = fetch(false);
+            if (fetched != null) {
+                cached = fetched;
+                return fetched.value;
+            }
+            // 刷新失败时，尚未真正过期的旧凭证仍可使用
+            return usable(current);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 获取刷新锁，超时或被中断时返回false
+     */
+    private boolean lock() {
+        try {
+            if (refreshLock.tryLock(waitTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            log.warn("等待access_token刷新超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * @param forceRefresh 是否强制换新，有效期内的旧凭证随即失效
+     */
+    private CachedToken fetch(boolean forceRefresh) {
+        refreshCount.increment();
+        try {
+            JSONObject param = JSONUtil.createObj();
+            param.set("grant_type", "client_credential");
+            param.set("appid", appId);
+            param.set("secret", secret);
+            param.set("force_refresh", forceRefresh);
+
+            log.debug("请求微信access_token");
+            JSONObject response = wxApiClient.post("/cgi-bin/stable_token", param.toString());
+            String accessToken = response.getStr("access_token");
+            long expiresIn = response.getLong("expires_in", 0L);
+            if (accessToken != null && !accessToken.isEmpty() && expiresIn > 0) {
+                log.info("微信access_token已刷新，有效期 {} 秒", expiresIn);
+                return new CachedToken(accessToken, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiresIn),
+                        TimeUnit.SECONDS.toMillis(Math.min(refreshAheadSeconds, expiresIn / 2)));
+            }
+            log.error("获取access_token失败，错误码：{}, 错误信息：{}",
+                    response.getInt("errcode", -1), response.getStr("errmsg", "未知错误"));
+        } catch (Exception e) {
+            log.error("获取access_token异常", e);
+        }
+        refreshFailureCount.increment();
+        return null;
+    }
+
+    private static String usable(CachedToken token) {
+        return token != null && token.expireAt > System.currentTimeMillis() ? token.value : null;
+    }
+
+    private static class CachedToken {
+
+        private final String value;
+
+        private final long expireAt;
+
+        /**
+         * 开始提前刷新的时间
+         */
+        private final long refreshAt;
+
+        CachedToken(String value, long expireAt, long refreshAheadMillis) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.refreshAt = expireAt - refreshAheadMillis;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() < refreshAt;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.fileshare.app.config;
 
+import com.fileshare.app.util.MinioMultipartClient;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.Data;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,4 +37,15 @@ public class MinioConfig {
                 .credentials(accessKey, secretKey)
                 .build();
     }
+
+    /**
+     * 注入MinIO分片上传客户端
+     */
+    @Bean
+    public MinioMultipartClient minioMultipartClient() {
+        return new MinioMultipartClient(MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .credentials(accessKey, secretKey)
+                .build());
+    }
 } 
\ No newline at end of file
@@ -1,7 +1,12 @@
 package com.fileshare.app.config.interceptor;
 
+import com.fileshare.app.cache.TokenCache;
+import com.fileshare.app.cache.UserProfileCache;
+import com.fileshare.app.entity.User;
 import com.fileshare.app.util.JwtUtil;
+import com.fileshare.app.util.JwtUtil.TokenClaims;
 import com.fileshare.app.util.ResultUtil;
+import com.fileshare.app.util.ResultUtil.Result;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,10 +29,17 @@ public class AuthInterceptor implements HandlerInterceptor {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthInterceptor.class);
     private static final String USER_ID_ATTRIBUTE = "userId";
+    private static final int USER_STATUS_NORMAL = 1;
     
     @Autowired
     private JwtUtil jwtUtil;
     
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -40,20 +52,27 @@ public class AuthInterceptor implements HandlerInterceptor {
         // 从请求头中获取token
         String token = extractToken(request);
         
-        // 验证token
-        if (!StringUtils.hasText(token) || !jwtUtil.validateToken(token)) {
-            logger.warn("未授权访问: {}, token: {}", requestURI, token);
+        // 验证token，一次解析同时得到有效性和用户ID，已验证过的token直接命中缓存
+        TokenClaims claims = StringUtils.hasText(token) ? tokenCache.get(token, jwtUtil::parseToken) : null;
+        if (claims == null) {
+            logger.warn("未授权访问: {}", requestURI);
             handleUnauthorized(response);
             return false;
         }
-        
-        // token有效，获取用户ID
-        Long userId = jwtUtil.getUserIdFromToken(token);
-        if (userId == null) {
-            logger.warn("无法从token中获取用户ID: {}", token);
+        Long userId = claims.getUserId();
+
+        // 检查账号状态，用户资料走缓存，不为每个请求查询数据库
+        User user = userProfileCache.get(userId);
+        if (user == null) {
+            logger.warn("token对应的用户不存在: userId={}", userId);
             handleUnauthorized(response);
             return false;
         }
+        if (!Integer.valueOf(USER_STATUS_NORMAL).equals(user.getStatus())) {
+            logger.warn("已禁用的用户访问: userId={}, {}", userId, requestURI);
+            writeResult(response, HttpServletResponse.SC_FORBIDDEN, ResultUtil.error(403, "账号已被禁用"));
+            return false;
+        }
         
         // 将用户ID放入请求属性中，方便后续使用
         request.setAttribute(USER_ID_ATTRIBUTE, userId);
@@ -64,11 +83,18 @@ public class AuthInterceptor implements HandlerInterceptor {
      * 处理未授权的请求
      */
     private void handleUnauthorized(HttpServletResponse response) throws IOException {
+        writeResult(response, HttpServletResponse.SC_UNAUTHORIZED, ResultUtil.unauthorized());
+    }
+
+    /**
+     * 以JSON形式写出错误结果
+     */
+    private void writeResult(HttpServletResponse response, int status, Result<?> result) throws IOException {
         response.setContentType("application/json;charset=UTF-8");
-        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.setStatus(status);
         
         try (PrintWriter writer = response.getWriter()) {
-            writer.write(objectMapper.writeValueAsString(ResultUtil.unauthorized()));
+            writer.write(objectMapper.writeValueAsString(result));
         }
     }
     
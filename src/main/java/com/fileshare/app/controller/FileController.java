@@ -1,6 +1,7 @@
 package com.fileshare.app.controller;
 
 import com.fileshare.app.config.interceptor.AuthInterceptor;
+import com.fileshare.app.controller.vo.FilePageVo;
 import com.fileshare.app.entity.FileInfo;
 import com.fileshare.app.service.FileService;
 import com.fileshare.app.util.ResultUtil;
@@ -9,11 +10,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -50,6 +53,45 @@ public class FileController {
         return fileService.uploadFile(file, fileName, userId);
     }
 
+    /**
+     * 流式上传文件
+     * 请求体为文件原始字节（application/octet-stream），直接转存MinIO，不经过multipart磁盘暂存
+     */
+    @PostMapping(value = "/upload-stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Result<FileInfo> uploadFileStream(
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        try {
+            return fileService.uploadFileStream(request.getInputStream(), request.getContentLengthLong(),
+                    fileName, contentType, userId);
+        } catch (IOException e) {
+            logger.error("读取上传数据失败: {}", e.getMessage());
+            return ResultUtil.error(500, "读取上传数据失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 秒传：先提交文件哈希，内容已存在时直接返回提取码，无需上传文件数据
+     */
+    @PostMapping("/instant-upload")
+    public Result<FileInfo> instantUpload(
+            @RequestParam("contentHash") String contentHash,
+            @RequestParam("fileSize") Long fileSize,
+            @RequestParam("fileName") String fileName,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        return fileService.instantUpload(contentHash, fileSize, fileName, contentType, userId);
+    }
+
     /**
      * 根据提取码获取文件信息
      */
@@ -76,7 +118,12 @@ public class FileController {
             HttpServletResponse response) {
         // 这里允许未登录用户下载，但如果登录了会记录下载历史
         Long userId = AuthInterceptor.getCurrentUserId(request);
-        return fileService.downloadFile(extractCode, userId, response);
+        Result<Void> result = fileService.downloadFile(extractCode, userId, request, response);
+        // 文件内容已写入响应体，不能再追加JSON
+        if (result.getCode() == 200 || response.isCommitted()) {
+            return null;
+        }
+        return result;
     }
 
     /**
@@ -91,6 +138,22 @@ public class FileController {
         return fileService.getUserFiles(userId);
     }
 
+    /**
+     * 分页获取用户上传的文件列表
+     */
+    @GetMapping("/list/page")
+    public Result<FilePageVo> getUserFilesPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestParam(value = "withTotal", defaultValue = "false") boolean withTotal,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        return fileService.getUserFilesPage(userId, cursor, size, withTotal);
+    }
+
     /**
      * 删除文件
      */
@@ -0,0 +1,90 @@
+package com.fileshare.app.controller;
+
+import com.fileshare.app.cache.DownloadHistoryBuffer;
+import com.fileshare.app.cache.ExtractCodeFilter;
+import com.fileshare.app.cache.FileInfoCache;
+import com.fileshare.app.cache.ObjectDiskCache;
+import com.fileshare.app.cache.SmallFileCache;
+import com.fileshare.app.cache.TokenCache;
+import com.fileshare.app.cache.UserProfileCache;
+import com.fileshare.app.cache.WxAccessTokenCache;
+import com.fileshare.app.util.ResultUtil;
+import com.fileshare.app.util.ResultUtil.Result;
+import com.fileshare.app.util.WxApiClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行监控控制器
+ * 暴露各级缓存及写入缓冲的统计信息，用于评估缓存容量、MinIO流量和积压情况
+ */
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Autowired
+    private ObjectDiskCache objectDiskCache;
+
+    @Autowired
+    private SmallFileCache smallFileCache;
+
+    @Autowired
+    private DownloadHistoryBuffer downloadHistoryBuffer;
+
+    @Autowired
+    private FileInfoCache fileInfoCache;
+
+    @Autowired
+    private ExtractCodeFilter extractCodeFilter;
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private WxAccessTokenCache wxAccessTokenCache;
+
+    @Autowired
+    private WxApiClient wxApiClient;
+
+    /**
+     * 缓存统计
+     */
+    @GetMapping("/cache")
+    public Result<Map<String, Object>> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("memoryCache", smallFileCache.stats());
+        stats.put("diskCache", objectDiskCache.stats());
+        stats.put("fileInfoCache", fileInfoCache.stats());
+        stats.put("extractCodeFilter", extractCodeFilter.stats());
+        stats.put("tokenCache", tokenCache.stats());
+        stats.put("userProfileCache", userProfileCache.stats());
+        return ResultUtil.success(stats);
+    }
+
+    /**
+     * 下载历史写入缓冲统计
+     */
+    @GetMapping("/download-history")
+    public Result<Map<String, Object>> getDownloadHistoryStats() {
+        return ResultUtil.success(downloadHistoryBuffer.stats());
+    }
+
+    /**
+     * 微信接口调用统计
+     */
+    @GetMapping("/wechat")
+    public Result<Map<String, Object>> getWechatStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("http", wxApiClient.stats());
+        stats.put("accessToken", wxAccessTokenCache.stats());
+        return ResultUtil.success(stats);
+    }
+}
@@ -0,0 +1,109 @@
+package com.fileshare.app.controller;
+
+import com.fileshare.app.config.interceptor.AuthInterceptor;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.entity.UploadSession;
+import com.fileshare.app.service.MultipartUploadService;
+import com.fileshare.app.util.ResultUtil;
+import com.fileshare.app.util.ResultUtil.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 分片上传控制器
+ * 流程：init -> 并行上传各分片（可重传） -> complete；中途可查询进度续传或abort取消
+ */
+@RestController
+@RequestMapping("/file/multipart")
+public class MultipartUploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(MultipartUploadController.class);
+
+    @Autowired
+    private MultipartUploadService multipartUploadService;
+
+    /**
+     * 初始化分片上传
+     */
+    @PostMapping("/init")
+    public Result<UploadSession> initUpload(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("fileSize") Long fileSize,
+            @RequestParam(value = "contentType", required = false) String contentType,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        return multipartUploadService.initUpload(fileName, fileSize, contentType, userId);
+    }
+
+    /**
+     * 上传分片，请求体为分片的原始字节
+     */
+    @PutMapping("/{uploadId}/parts/{partNumber}")
+    public Result<Map<String, Object>> uploadPart(
+            @PathVariable String uploadId,
+            @PathVariable Integer partNumber,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        try {
+            return multipartUploadService.uploadPart(uploadId, partNumber, request.getInputStream(),
+                    request.getContentLengthLong(), userId);
+        } catch (IOException e) {
+            logger.error("读取分片数据失败: {}", e.getMessage());
+            return ResultUtil.error(500, "读取分片数据失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询上传进度（已上传的分片）
+     */
+    @GetMapping("/{uploadId}")
+    public Result<Map<String, Object>> getUploadProgress(
+            @PathVariable String uploadId,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        return multipartUploadService.getUploadProgress(uploadId, userId);
+    }
+
+    /**
+     * 合并分片
+     */
+    @PostMapping("/{uploadId}/complete")
+    public Result<FileInfo> completeUpload(
+            @PathVariable String uploadId,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        return multipartUploadService.completeUpload(uploadId, userId);
+    }
+
+    /**
+     * 取消分片上传
+     */
+    @DeleteMapping("/{uploadId}")
+    public Result<Void> abortUpload(
+            @PathVariable String uploadId,
+            HttpServletRequest request) {
+        Long userId = AuthInterceptor.getCurrentUserId(request);
+        if (userId == null) {
+            return ResultUtil.unauthorized();
+        }
+        return multipartUploadService.abortUpload(uploadId, userId);
+    }
+}
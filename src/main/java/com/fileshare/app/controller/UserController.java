@@ -5,7 +5,6 @@ import com.fileshare.app.controller.dto.WxLoginRequest;
 import com.fileshare.app.controller.vo.LoginVo;
 import com.fileshare.app.entity.User;
 import com.fileshare.app.service.UserService;
-import com.fileshare.app.util.JwtUtil;
 import com.fileshare.app.util.ResultUtil;
 import com.fileshare.app.util.ResultUtil.Result;
 import io.swagger.annotations.Api;
@@ -35,9 +34,6 @@ public class UserController {
     @Autowired
     private UserService userService;
 
-    @Autowired
-    private JwtUtil jwtUtil;
-
     /**
      * 微信登录
      */
@@ -56,41 +52,13 @@ public class UserController {
                 loginRequest.getPhoneCode());
         
         try {
-            // 调用登录服务
+            // 调用登录服务，直接返回登录用户信息和token
             String avatarUrl = "/static/images/logo.png";
-            Result<String> result = userService.wxLogin(
+            return userService.wxLogin(
                     loginRequest.getCode(), 
                     loginRequest.getNickName(), 
                     loginRequest.getPhoneCode(), 
                     avatarUrl);
-            
-            if (result.getCode() != 200) {
-                return ResultUtil.error(result.getCode(), result.getMessage());
-            }
-            
-            // 构建登录返回数据
-            String token = result.getData();
-            Long userId = jwtUtil.getUserIdFromToken(token);
-            
-            // 获取用户信息
-            Result<User> userResult = userService.getUserInfo(userId);
-            
-            if (userResult.getCode() != 200 || userResult.getData() == null) {
-                return ResultUtil.error("获取用户信息失败");
-            }
-            
-            User user = userResult.getData();
-            
-            // 构建登录返回VO
-            LoginVo loginVo = LoginVo.builder()
-                    .userId(user.getId())
-                    .nickname(user.getNickname())
-                    .avatarUrl(user.getAvatarUrl())
-                    .phoneNumber(user.getPhoneNumber())
-                    .token(token)
-                    .build();
-            
-            return ResultUtil.success(loginVo);
         } catch (Exception e) {
             logger.error("登录异常", e);
             return ResultUtil.error("登录失败: " + e.getMessage());
@@ -155,7 +123,7 @@ public class UserController {
      */
     @ApiOperation("上传用户头像")
     @PostMapping("/avatar")
-    public Result<String> uploadAvatar(@RequestParam("file") MultipartFile file, HttpServletRequest request) {
+    public Result<Map<String, String>> uploadAvatar(@RequestParam("file") MultipartFile file, HttpServletRequest request) {
         try {
             Long userId = AuthInterceptor.getCurrentUserId(request);
             if (userId == null) {
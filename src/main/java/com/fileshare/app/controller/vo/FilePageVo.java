@@ -0,0 +1,33 @@
+package com.fileshare.app.controller.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 文件分页VO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("文件分页")
+public class FilePageVo {
+
+    @ApiModelProperty("当前页文件")
+    private List<FileSummaryVo> records;
+
+    @ApiModelProperty("下一页游标，没有更多数据时为空")
+    private String nextCursor;
+
+    @ApiModelProperty("是否还有更多数据")
+    private Boolean hasMore;
+
+    @ApiModelProperty("文件总数，仅在请求时返回")
+    private Long total;
+}
@@ -0,0 +1,45 @@
+package com.fileshare.app.controller.vo;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文件列表项VO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ApiModel("文件列表项")
+public class FileSummaryVo {
+
+    @ApiModelProperty("文件ID")
+    private Long id;
+
+    @ApiModelProperty("文件名")
+    private String fileName;
+
+    @ApiModelProperty("文件大小（字节）")
+    private Long fileSize;
+
+    @ApiModelProperty("文件类型")
+    private String fileType;
+
+    @ApiModelProperty("提取码")
+    private String extractCode;
+
+    @ApiModelProperty("下载次数")
+    private Integer downloadCount;
+
+    @ApiModelProperty("过期时间")
+    private LocalDateTime expireTime;
+
+    @ApiModelProperty("上传时间")
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,53 @@
+package com.fileshare.app.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文件内容实体类
+ * 相同内容（SHA-256相同）的文件在MinIO中只存一份，由ref_count记录引用它的文件数
+ */
+@Data
+@TableName("file_content")
+public class FileContent {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 内容SHA-256（十六进制小写）
+     */
+    private String contentHash;
+
+    /**
+     * 存储路径
+     */
+    private String storagePath;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 引用计数
+     */
+    private Integer refCount;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -46,6 +46,11 @@ public class FileInfo {
      */
     private String storagePath;
 
+    /**
+     * 内容SHA-256，为空表示该文件独占存储对象
+     */
+    private String contentHash;
+
     /**
      * 提取码
      */
@@ -0,0 +1,42 @@
+package com.fileshare.app.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 存储对账检查点实体类
+ */
+@Data
+@TableName("reconcile_checkpoint")
+public class ReconcileCheckpoint {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 任务名称
+     */
+    private String taskName;
+
+    /**
+     * 已处理到的对象名，为空表示上次对账已完整结束
+     */
+    private String lastKey;
+
+    /**
+     * 本轮对账开始时间
+     */
+    private LocalDateTime startTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,52 @@
+package com.fileshare.app.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 任务租约实体类
+ */
+@Data
+@TableName("task_lease")
+public class TaskLease {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 租约键（任务名或任务分片）
+     */
+    private String leaseKey;
+
+    /**
+     * 当前持有者（节点标识）
+     */
+    private String owner;
+
+    /**
+     * 租约到期时间，到期后其他节点可以接管
+     */
+    private LocalDateTime expireTime;
+
+    /**
+     * 完成时间，不为空表示该分片已处理完毕
+     */
+    private LocalDateTime finishTime;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,78 @@
+package com.fileshare.app.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分片上传会话实体类
+ */
+@Data
+@TableName("upload_session")
+public class UploadSession {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * MinIO分片上传ID
+     */
+    private String uploadId;
+
+    /**
+     * 上传用户ID
+     */
+    private Long userId;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 文件类型
+     */
+    private String fileType;
+
+    /**
+     * 存储路径
+     */
+    private String storagePath;
+
+    /**
+     * 分片大小（字节）
+     */
+    private Long chunkSize;
+
+    /**
+     * 分片总数
+     */
+    private Integer totalParts;
+
+    /**
+     * 会话状态（0-已取消，1-上传中，2-合并中，3-已完成，4-已失败）
+     * 注意不能命名为status，否则会被全局逻辑删除配置接管
+     */
+    private Integer state;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -2,11 +2,29 @@ package com.fileshare.app.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.fileshare.app.entity.DownloadHistory;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 下载历史Mapper接口
  */
 @Mapper
 public interface DownloadHistoryMapper extends BaseMapper<DownloadHistory> {
-} 
\ No newline at end of file
+
+    /**
+     * 多行批量插入下载历史
+     *
+     * @param histories 下载历史
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO download_history (file_id, user_id, download_time, download_ip) VALUES " +
+            "<foreach collection='histories' item='h' separator=','>" +
+            "(#{h.fileId}, #{h.userId}, #{h.downloadTime}, #{h.downloadIp})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("histories") List<DownloadHistory> histories);
+}
@@ -0,0 +1,41 @@
+package com.fileshare.app.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.fileshare.app.entity.FileContent;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 文件内容Mapper接口
+ */
+@Mapper
+public interface FileContentMapper extends BaseMapper<FileContent> {
+
+    /**
+     * 增加引用计数，只对仍被引用且大小一致的内容生效
+     *
+     * @return 影响行数，0表示内容不存在或正在被回收
+     */
+    @Update("UPDATE file_content SET ref_count = ref_count + 1, update_time = NOW() " +
+            "WHERE content_hash = #{contentHash} AND file_size = #{fileSize} AND ref_count > 0")
+    int incrementRef(@Param("contentHash") String contentHash, @Param("fileSize") long fileSize);
+
+    /**
+     * 减少引用计数
+     *
+     * @return 影响行数
+     */
+    @Update("UPDATE file_content SET ref_count = ref_count - 1, update_time = NOW() " +
+            "WHERE content_hash = #{contentHash} AND ref_count > 0")
+    int decrementRef(@Param("contentHash") String contentHash);
+
+    /**
+     * 删除已无引用的内容记录
+     *
+     * @return 影响行数，1表示最后一个引用已释放
+     */
+    @Delete("DELETE FROM file_content WHERE content_hash = #{contentHash} AND ref_count = 0")
+    int deleteUnreferenced(@Param("contentHash") String contentHash);
+}
@@ -3,10 +3,73 @@ package com.fileshare.app.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.fileshare.app.entity.FileInfo;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 文件信息Mapper接口
  */
 @Mapper
 public interface FileInfoMapper extends BaseMapper<FileInfo> {
-} 
\ No newline at end of file
+
+    /**
+     * 批量累加下载次数
+     *
+     * @param deltas 文件ID -> 下载次数增量
+     * @return 影响行数
+     */
+    @Update("<script>" +
+            "UPDATE file SET download_count = download_count + CASE id " +
+            "<foreach collection='deltas' index='fileId' item='delta'>WHEN #{fileId} THEN #{delta} </foreach>" +
+            "END WHERE id IN " +
+            "<foreach collection='deltas' index='fileId' item='delta' open='(' separator=',' close=')'>#{fileId}</foreach>" +
+            "</script>")
+    int incrementDownloadCounts(@Param("deltas") Map<Long, Long> deltas);
+
+    /**
+     * 查询已被占用的提取码（包括已删除的文件）
+     *
+     * @param codes 候选提取码
+     * @return 已占用的提取码
+     */
+    @Select("<script>" +
+            "SELECT extract_code FROM file WHERE extract_code IN " +
+            "<foreach collection='codes' item='code' open='(' separator=',' close=')'>#{code}</foreach>" +
+            "</script>")
+    List<String> selectExistingExtractCodes(@Param("codes") List<String> codes);
+
+    /**
+     * 批量逻辑删除，同时用数据库时间更新update_time，供其他节点按update_time增量同步
+     *
+     * @param ids 文件ID
+     * @return 影响行数
+     */
+    @Update("<script>" +
+            "UPDATE file SET status = 0, update_time = NOW() WHERE status = 1 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int retireByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查询数据库当前时间，作为增量同步的水位，不受各节点时钟偏差影响
+     *
+     * @return 数据库当前时间
+     */
+    @Select("SELECT NOW()")
+    LocalDateTime selectDatabaseTime();
+
+    /**
+     * 查询指定时间之后变更过的文件（包括已删除的文件）
+     *
+     * @param since 起始时间（含）
+     * @return 文件ID、提取码和状态
+     */
+    @Select("SELECT id, extract_code, status FROM file WHERE update_time >= #{since}")
+    List<FileInfo> selectChangedSince(@Param("since") LocalDateTime since);
+}
@@ -0,0 +1,12 @@
+package com.fileshare.app.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.fileshare.app.entity.ReconcileCheckpoint;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 存储对账检查点Mapper接口
+ */
+@Mapper
+public interface ReconcileCheckpointMapper extends BaseMapper<ReconcileCheckpoint> {
+}
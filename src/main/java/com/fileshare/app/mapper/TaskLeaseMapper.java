@@ -0,0 +1,65 @@
+package com.fileshare.app.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.fileshare.app.entity.TaskLease;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 任务租约Mapper接口
+ * 所有时间比较都使用数据库时间，不受各节点时钟偏差影响
+ */
+@Mapper
+public interface TaskLeaseMapper extends BaseMapper<TaskLease> {
+
+    /**
+     * 租约记录不存在时创建（初始即为已过期，可被任意节点获取）
+     *
+     * @return 影响行数
+     */
+    @Insert("INSERT IGNORE INTO task_lease (lease_key, owner, expire_time, create_time, update_time) " +
+            "VALUES (#{leaseKey}, '', NOW(3), NOW(), NOW())")
+    int insertIfAbsent(@Param("leaseKey") String leaseKey);
+
+    /**
+     * 获取或续期租约：只有租约已过期或本来就由自己持有时才会成功
+     *
+     * @return 影响行数，1表示持有租约
+     */
+    @Update("UPDATE task_lease SET owner = #{owner}, " +
+            "expire_time = DATE_ADD(NOW(3), INTERVAL #{leaseSeconds} SECOND), update_time = NOW() " +
+            "WHERE lease_key = #{leaseKey} AND finish_time IS NULL " +
+            "AND (owner = #{owner} OR expire_time < NOW(3))")
+    int acquire(@Param("leaseKey") String leaseKey, @Param("owner") String owner,
+                @Param("leaseSeconds") long leaseSeconds);
+
+    /**
+     * 释放租约
+     *
+     * @return 影响行数
+     */
+    @Update("UPDATE task_lease SET expire_time = NOW(3), update_time = NOW() " +
+            "WHERE lease_key = #{leaseKey} AND owner = #{owner}")
+    int release(@Param("leaseKey") String leaseKey, @Param("owner") String owner);
+
+    /**
+     * 标记分片已完成
+     *
+     * @return 影响行数
+     */
+    @Update("UPDATE task_lease SET finish_time = NOW(), update_time = NOW() " +
+            "WHERE lease_key = #{leaseKey} AND owner = #{owner}")
+    int finish(@Param("leaseKey") String leaseKey, @Param("owner") String owner);
+
+    /**
+     * 删除早于指定天数的一次性分片租约
+     *
+     * @return 影响行数
+     */
+    @Delete("DELETE FROM task_lease WHERE lease_key LIKE CONCAT(#{prefix}, '%') " +
+            "AND update_time < DATE_SUB(NOW(), INTERVAL #{days} DAY)")
+    int deleteStale(@Param("prefix") String prefix, @Param("days") int days);
+}
@@ -0,0 +1,12 @@
+package com.fileshare.app.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.fileshare.app.entity.UploadSession;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 分片上传会话Mapper接口
+ */
+@Mapper
+public interface UploadSessionMapper extends BaseMapper<UploadSession> {
+}
@@ -2,11 +2,51 @@ package com.fileshare.app.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.fileshare.app.entity.User;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
 /**
  * 用户Mapper接口
  */
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
-} 
\ No newline at end of file
+
+    /**
+     * 按open_id插入或更新用户，依赖uk_open_id保证并发首次登录只产生一行
+     * 已存在时只在提供了新手机号时更新手机号，昵称和头像保持不变；
+     * id = LAST_INSERT_ID(id) 使已存在的行也能通过生成主键回填到user.id（MySQL驱动）。
+     * 更新部分直接引用参数而不是已废弃的VALUES()，也不使用IF和{@code <=>}，H2的MySQL模式可以执行
+     *
+     * @param user 用户信息，执行后id被回填；驱动未返回已存在行的主键时id保持为null
+     * @return 影响行数
+     */
+    @Insert("INSERT INTO user (open_id, nickname, avatar_url, phone_number, create_time, update_time, status) " +
+            "VALUES (#{user.openId}, #{user.nickname}, #{user.avatarUrl}, #{user.phoneNumber}, NOW(), NOW(), 1) " +
+            "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id), " +
+            "update_time = CASE WHEN #{user.phoneNumber} <> '' " +
+            "AND (phone_number IS NULL OR phone_number <> #{user.phoneNumber}) THEN NOW() ELSE update_time END, " +
+            "phone_number = CASE WHEN #{user.phoneNumber} <> '' THEN #{user.phoneNumber} ELSE phone_number END")
+    @Options(useGeneratedKeys = true, keyProperty = "user.id", keyColumn = "id")
+    int upsertByOpenId(@Param("user") User user);
+
+    /**
+     * 按open_id查询用户，包括已禁用的用户（不受逻辑删除过滤）
+     *
+     * @param openId 微信OpenID
+     * @return 用户信息
+     */
+    @Select("SELECT * FROM user WHERE open_id = #{openId}")
+    User selectByOpenIdIncludingDisabled(@Param("openId") String openId);
+
+    /**
+     * 按ID查询用户，包括已禁用的用户（不受逻辑删除过滤）
+     *
+     * @param id 用户ID
+     * @return 用户信息
+     */
+    @Select("SELECT * FROM user WHERE id = #{id}")
+    User selectByIdIncludingDisabled(@Param("id") Long id);
+}
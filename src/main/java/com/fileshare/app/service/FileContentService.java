@@ -0,0 +1,61 @@
+package com.fileshare.app.service;
+
+import com.fileshare.app.entity.FileContent;
+
+import java.util.List;
+
+/**
+ * 文件内容服务接口
+ * 负责按内容哈希去重存储，并在最后一个引用释放时回收MinIO对象
+ */
+public interface FileContentService {
+
+    /**
+     * 按哈希引用已存在的内容（引用计数+1）
+     *
+     * @param contentHash 内容SHA-256
+     * @param fileSize 文件大小（字节）
+     * @return 已存在的内容，不存在时返回null
+     */
+    FileContent acquire(String contentHash, long fileSize);
+
+    /**
+     * 登记新上传的对象。若相同内容已存在，则引用已有内容，调用方应删除自己刚上传的对象
+     *
+     * @param contentHash 内容SHA-256
+     * @param fileSize 文件大小（字节）
+     * @param storagePath 刚上传的对象存储路径
+     * @return 最终使用的存储路径
+     */
+    String register(String contentHash, long fileSize, String storagePath);
+
+    /**
+     * 释放一个引用
+     *
+     * @param contentHash 内容SHA-256，为空表示该文件独占对象
+     * @return 是否已是最后一个引用（调用方应删除MinIO对象）
+     */
+    boolean release(String contentHash);
+
+    /**
+     * 删除MinIO对象
+     *
+     * @param storagePath 存储路径
+     */
+    void removeStorageObject(String storagePath);
+
+    /**
+     * 当前事务提交后删除MinIO对象，无事务时立即删除
+     *
+     * @param storagePath 存储路径
+     */
+    void removeStorageObjectAfterCommit(String storagePath);
+
+    /**
+     * 批量删除MinIO对象，每次请求最多1000个，失败的对象会重试
+     *
+     * @param storagePaths 存储路径
+     * @return 重试后仍删除失败的存储路径
+     */
+    List<String> removeStorageObjects(List<String> storagePaths);
+}
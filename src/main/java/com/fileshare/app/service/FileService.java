@@ -1,10 +1,13 @@
 package com.fileshare.app.service;
 
+import com.fileshare.app.controller.vo.FilePageVo;
 import com.fileshare.app.entity.FileInfo;
 import com.fileshare.app.util.ResultUtil.Result;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -23,6 +26,46 @@ public interface FileService {
      */
     Result<FileInfo> uploadFile(MultipartFile file, String fileName, Long userId);
 
+    /**
+     * 流式上传文件（请求体即文件内容）
+     *
+     * @param inputStream 请求体输入流
+     * @param contentLength 文件大小（字节）
+     * @param fileName 文件名
+     * @param contentType 文件类型
+     * @param userId 上传用户ID
+     * @return 上传结果（含提取码）
+     */
+    Result<FileInfo> uploadFileStream(InputStream inputStream, long contentLength, String fileName,
+                                      String contentType, Long userId);
+
+    /**
+     * 秒传：内容已存在时只创建文件记录，不传输文件数据
+     *
+     * @param contentHash 文件内容SHA-256
+     * @param fileSize 文件大小（字节）
+     * @param fileName 文件名
+     * @param contentType 文件类型
+     * @param userId 上传用户ID
+     * @return 上传结果（含提取码），内容不存在时返回404
+     */
+    Result<FileInfo> instantUpload(String contentHash, long fileSize, String fileName,
+                                   String contentType, Long userId);
+
+    /**
+     * 为已存入MinIO的对象创建文件记录并分配提取码
+     *
+     * @param fileName 文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型
+     * @param storagePath 存储路径
+     * @param contentHash 内容SHA-256，未参与去重时为null
+     * @param userId 上传用户ID
+     * @return 文件信息
+     */
+    FileInfo createFileRecord(String fileName, long fileSize, String fileType, String storagePath,
+                              String contentHash, Long userId);
+
     /**
      * 获取文件信息（通过提取码）
      *
@@ -32,14 +75,16 @@ public interface FileService {
     Result<FileInfo> getFileInfoByCode(String extractCode);
 
     /**
-     * 下载文件
+     * 下载文件，支持Range请求
      *
      * @param extractCode 提取码
      * @param userId 下载用户ID
+     * @param request HTTP请求
      * @param response HTTP响应
      * @return 下载结果
      */
-    Result<Void> downloadFile(String extractCode, Long userId, HttpServletResponse response);
+    Result<Void> downloadFile(String extractCode, Long userId, HttpServletRequest request,
+                              HttpServletResponse response);
 
     /**
      * 生成文件预签名下载链接
@@ -57,6 +102,17 @@ public interface FileService {
      */
     Result<List<FileInfo>> getUserFiles(Long userId);
 
+    /**
+     * 分页获取用户上传的文件列表（按上传时间倒序，游标分页）
+     *
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页数量
+     * @param withTotal 是否返回文件总数
+     * @return 文件分页
+     */
+    Result<FilePageVo> getUserFilesPage(Long userId, String cursor, int size, boolean withTotal);
+
     /**
      * 删除文件
      *
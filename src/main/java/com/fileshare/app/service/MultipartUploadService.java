@@ -0,0 +1,72 @@
+package com.fileshare.app.service;
+
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.entity.UploadSession;
+import com.fileshare.app.util.ResultUtil.Result;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * 分片上传服务接口
+ */
+public interface MultipartUploadService {
+
+    /**
+     * 初始化分片上传
+     *
+     * @param fileName 文件名
+     * @param fileSize 文件大小（字节）
+     * @param contentType 文件类型
+     * @param userId 上传用户ID
+     * @return 上传会话（含uploadId、分片大小、分片总数）
+     */
+    Result<UploadSession> initUpload(String fileName, Long fileSize, String contentType, Long userId);
+
+    /**
+     * 上传单个分片，同一分片可重复上传（后一次覆盖前一次）
+     *
+     * @param uploadId 上传ID
+     * @param partNumber 分片号（从1开始）
+     * @param inputStream 分片数据
+     * @param contentLength 分片长度
+     * @param userId 上传用户ID
+     * @return 分片号及ETag
+     */
+    Result<Map<String, Object>> uploadPart(String uploadId, Integer partNumber, InputStream inputStream,
+                                           long contentLength, Long userId);
+
+    /**
+     * 查询上传进度，用于断点续传
+     *
+     * @param uploadId 上传ID
+     * @param userId 上传用户ID
+     * @return 会话信息及已上传的分片号
+     */
+    Result<Map<String, Object>> getUploadProgress(String uploadId, Long userId);
+
+    /**
+     * 合并分片，生成文件记录和提取码
+     *
+     * @param uploadId 上传ID
+     * @param userId 上传用户ID
+     * @return 文件信息（含提取码）
+     */
+    Result<FileInfo> completeUpload(String uploadId, Long userId);
+
+    /**
+     * 取消分片上传
+     *
+     * @param uploadId 上传ID
+     * @param userId 上传用户ID
+     * @return 取消结果
+     */
+    Result<Void> abortUpload(String uploadId, Long userId);
+
+    /**
+     * 清理超时未完成的上传会话
+     *
+     * @return 清理的会话数
+     */
+    int cleanExpiredSessions();
+}
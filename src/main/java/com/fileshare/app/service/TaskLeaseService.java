@@ -0,0 +1,52 @@
+package com.fileshare.app.service;
+
+/**
+ * 任务租约服务接口
+ * 基于数据库行的租约，多节点部署时保证同一任务（或任务分片）同一时间只由一个节点执行；
+ * 持有者宕机后租约到期，其他节点即可接管
+ */
+public interface TaskLeaseService {
+
+    /**
+     * 获取或续期租约
+     *
+     * @param leaseKey 租约键
+     * @param leaseSeconds 租约时长（秒），执行期间需在到期前续期
+     * @return 是否持有租约
+     */
+    boolean tryAcquire(String leaseKey, long leaseSeconds);
+
+    /**
+     * 释放租约
+     *
+     * @param leaseKey 租约键
+     */
+    void release(String leaseKey);
+
+    /**
+     * 标记分片已完成，之后任何节点都不会再获取该租约
+     *
+     * @param leaseKey 租约键
+     */
+    void markFinished(String leaseKey);
+
+    /**
+     * 分片是否已完成
+     *
+     * @param leaseKey 租约键
+     */
+    boolean isFinished(String leaseKey);
+
+    /**
+     * 删除早于指定天数的分片租约记录
+     *
+     * @param prefix 租约键前缀
+     * @param days 保留天数
+     */
+    void deleteStale(String prefix, int days);
+
+    /**
+     * 当前节点标识
+     */
+    String getOwnerId();
+}
@@ -1,10 +1,12 @@
 package com.fileshare.app.service;
 
+import com.fileshare.app.controller.vo.LoginVo;
 import com.fileshare.app.entity.User;
 import com.fileshare.app.util.ResultUtil.Result;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * 用户服务接口
@@ -18,9 +20,9 @@ public interface UserService {
      * @param nickName 用户昵称
      * @param phoneCode 手机号获取凭证
      * @param avatarUrl 用户头像URL (内部默认设置，不需要外部传入)
-     * @return 登录结果
+     * @return 登录结果，包含用户信息和访问令牌
      */
-    Result<String> wxLogin(String code, String nickName, String phoneCode, String avatarUrl);
+    Result<LoginVo> wxLogin(String code, String nickName, String phoneCode, String avatarUrl);
 
     /**
      * 根据用户ID获取用户信息
@@ -43,8 +45,8 @@ public interface UserService {
      *
      * @param userId 用户ID
      * @param file 头像文件
-     * @return 头像URL
+     * @return 边长 -> 头像URL
      * @throws IOException IO异常
      */
-    Result<String> uploadAvatar(Long userId, MultipartFile file) throws IOException;
+    Result<Map<String, String>> uploadAvatar(Long userId, MultipartFile file) throws IOException;
 } 
\ No newline at end of file
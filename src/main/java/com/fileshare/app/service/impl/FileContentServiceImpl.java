@@ -0,0 +1,252 @@
+package com.fileshare.app.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fileshare.app.cache.ObjectDiskCache;
+import com.fileshare.app.cache.SmallFileCache;
+import com.fileshare.app.config.MinioConfig;
+import com.fileshare.app.entity.FileContent;
+import com.fileshare.app.mapper.FileContentMapper;
+import com.fileshare.app.service.FileContentService;
+import io.minio.MinioClient;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件内容服务实现类
+ */
+@Service
+public class FileContentServiceImpl extends ServiceImpl<FileContentMapper, FileContent> implements FileContentService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileContentServiceImpl.class);
+
+    /**
+     * 登记内容时与并发回收发生冲突的最大重试次数
+     */
+    private static final int MAX_REGISTER_ATTEMPTS = 3;
+
+    /**
+     * MinIO单次批量删除的对象数上限
+     */
+    private static final int REMOVE_BATCH_SIZE = 1000;
+
+    /**
+     * 批量删除失败时的最大尝试次数
+     */
+    private static final int MAX_REMOVE_ATTEMPTS = 3;
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @Autowired
+    private MinioConfig minioConfig;
+
+    @Autowired
+    private ObjectDiskCache objectDiskCache;
+
+    @Autowired
+    private SmallFileCache smallFileCache;
+
+    /**
+     * 按哈希引用已存在的内容（引用计数+1）
+     *
+     * @param contentHash 内容SHA-256
+     * @param fileSize 文件大小（字节）
+     * @return 已存在的内容，不存在时返回null
+     */
+    @Override
+    public FileContent acquire(String contentHash, long fileSize) {
+        if (contentHash == null || contentHash.isEmpty()) {
+            return null;
+        }
+        // 先加引用再读取：引用计数大于0的记录不会被回收，读到的存储路径一定有效
+        if (baseMapper.incrementRef(contentHash, fileSize) == 0) {
+            return null;
+        }
+        return getByHash(contentHash);
+    }
+
+    /**
+     * 登记新上传的对象。若相同内容已存在，则引用已有内容，调用方应删除自己刚上传的对象
+     *
+     * @param contentHash 内容SHA-256
+     * @param fileSize 文件大小（字节）
+     * @param storagePath 刚上传的对象存储路径
+     * @return 最终使用的存储路径
+     */
+    @Override
+    public String register(String contentHash, long fileSize, String storagePath) {
+        for (int attempt = 0; attempt < MAX_REGISTER_ATTEMPTS; attempt++) {
+            FileContent existing = acquire(contentHash, fileSize);
+            if (existing != null) {
+                log.info("内容已存在，复用对象: hash={}, storagePath={}", contentHash, existing.getStoragePath());
+                return existing.getStoragePath();
+            }
+
+            FileContent content = new FileContent();
+            content.setContentHash(contentHash);
+            content.setStoragePath(storagePath);
+            content.setFileSize(fileSize);
+            content.setRefCount(1);
+            content.setCreateTime(LocalDateTime.now());
+            content.setUpdateTime(LocalDateTime.now());
+            try {
+                save(content);
+                return storagePath;
+            } catch (DuplicateKeyException e) {
+                // 并发上传了相同内容，或旧记录正在被回收，重新尝试引用
+                log.debug("登记内容冲突，重试: hash={}, attempt={}", contentHash, attempt + 1);
+            }
+        }
+        throw new IllegalStateException("登记文件内容失败: " + contentHash);
+    }
+
+    /**
+     * 释放一个引用
+     *
+     * @param contentHash 内容SHA-256，为空表示该文件独占对象
+     * @return 是否已是最后一个引用（调用方应删除MinIO对象）
+     */
+    @Override
+    public boolean release(String contentHash) {
+        if (contentHash == null || contentHash.isEmpty()) {
+            return true;
+        }
+        if (baseMapper.decrementRef(contentHash) == 0) {
+            log.warn("释放内容引用时未找到记录: hash={}", contentHash);
+            return false;
+        }
+        return baseMapper.deleteUnreferenced(contentHash) > 0;
+    }
+
+    /**
+     * 删除MinIO对象
+     *
+     * @param storagePath 存储路径
+     */
+    @Override
+    public void removeStorageObject(String storagePath) {
+        objectDiskCache.invalidate(storagePath);
+        smallFileCache.invalidate(storagePath);
+        try {
+            minioClient.removeObject(
+                    RemoveObjectArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .object(storagePath)
+                            .build()
+            );
+            log.info("已删除存储对象: {}", storagePath);
+        } catch (Exception e) {
+            log.error("删除存储对象 {} 失败: {}", storagePath, e.getMessage());
+        }
+    }
+
+    /**
+     * 当前事务提交后删除MinIO对象，无事务时立即删除
+     *
+     * @param storagePath 存储路径
+     */
+    @Override
+    public void removeStorageObjectAfterCommit(String storagePath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            removeStorageObject(storagePath);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                removeStorageObject(storagePath);
+            }
+        });
+    }
+
+    /**
+     * 批量删除MinIO对象，每次请求最多1000个，失败的对象会重试
+     *
+     * @param storagePaths 存储路径
+     * @return 重试后仍删除失败的存储路径
+     */
+    @Override
+    public List<String> removeStorageObjects(List<String> storagePaths) {
+        List<String> failed = new ArrayList<>();
+        for (int from = 0; from < storagePaths.size(); from += REMOVE_BATCH_SIZE) {
+            List<String> pending = storagePaths.subList(from, Math.min(from + REMOVE_BATCH_SIZE, storagePaths.size()));
+            for (String storagePath : pending) {
+                objectDiskCache.invalidate(storagePath);
+                smallFileCache.invalidate(storagePath);
+            }
+            for (int attempt = 1; !pending.isEmpty(); attempt++) {
+                pending = removeBatch(pending);
+                if (pending.isEmpty() || attempt >= MAX_REMOVE_ATTEMPTS) {
+                    break;
+                }
+                log.warn("{} 个存储对象删除失败，第 {} 次重试", pending.size(), attempt);
+                try {
+                    Thread.sleep(1000L * attempt);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            failed.addAll(pending);
+        }
+        if (!failed.isEmpty()) {
+            log.error("{} 个存储对象删除失败，留待对账任务处理", failed.size());
+        }
+        return failed;
+    }
+
+    /**
+     * 执行一次批量删除
+     *
+     * @return 删除失败的存储路径
+     */
+    private List<String> removeBatch(List<String> storagePaths) {
+        List<DeleteObject> objects = new ArrayList<>(storagePaths.size());
+        for (String storagePath : storagePaths) {
+            objects.add(new DeleteObject(storagePath));
+        }
+        List<String> failed = new ArrayList<>();
+        try {
+            // 结果是惰性的，必须遍历才会真正发出请求
+            Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                    RemoveObjectsArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .objects(objects)
+                            .build()
+            );
+            for (Result<DeleteError> result : results) {
+                DeleteError error = result.get();
+                log.warn("删除存储对象 {} 失败: {}", error.objectName(), error.message());
+                failed.add(error.objectName());
+            }
+        } catch (Exception e) {
+            log.error("批量删除存储对象失败: {}", e.getMessage());
+            return new ArrayList<>(storagePaths);
+        }
+        return failed;
+    }
+
+    /**
+     * 按哈希查询内容记录
+     */
+    private FileContent getByHash(String contentHash) {
+        LambdaQueryWrapper<FileContent> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(FileContent::getContentHash, contentHash);
+        return getOne(wrapper);
+    }
+}
@@ -1,36 +1,70 @@
 package com.fileshare.app.service.impl;
 
+import cn.hutool.core.util.HexUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fileshare.app.cache.DownloadCounter;
+import com.fileshare.app.cache.DownloadHistoryBuffer;
+import com.fileshare.app.cache.ExtractCodeFilter;
+import com.fileshare.app.cache.FileInfoCache;
+import com.fileshare.app.cache.ObjectDiskCache;
+import com.fileshare.app.cache.SmallFileCache;
 import com.fileshare.app.config.MinioConfig;
+import com.fileshare.app.controller.vo.FilePageVo;
+import com.fileshare.app.controller.vo.FileSummaryVo;
 import com.fileshare.app.entity.DownloadHistory;
+import com.fileshare.app.entity.FileContent;
 import com.fileshare.app.entity.FileInfo;
-import com.fileshare.app.mapper.DownloadHistoryMapper;
 import com.fileshare.app.mapper.FileInfoMapper;
+import com.fileshare.app.service.FileContentService;
 import com.fileshare.app.service.FileService;
+import com.fileshare.app.util.ClientIpResolver;
 import com.fileshare.app.util.ExtractCodeUtil;
 import com.fileshare.app.util.ResultUtil;
 import com.fileshare.app.util.ResultUtil.Result;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.minio.*;
 import io.minio.http.Method;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * 文件服务实现类
@@ -40,6 +74,41 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
 
     private static final Logger log = LoggerFactory.getLogger(FileServiceImpl.class);
 
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+
+    /**
+     * 单个请求允许的最大Range段数
+     */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * 传输缓冲区大小
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 8192;
+
+    /**
+     * 提取码唯一索引冲突时的最大分配次数
+     */
+    private static final int MAX_EXTRACT_CODE_ATTEMPTS = 3;
+
+    /**
+     * 文件列表每页最大数量
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * 用户文件总数缓存，避免每次翻页都执行COUNT
+     */
+    private Cache<Long, Long> userFileCounts;
+
+    /**
+     * Tomcat sendfile相关的请求属性
+     */
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     private MinioClient minioClient;
 
@@ -50,11 +119,55 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
     private ExtractCodeUtil extractCodeUtil;
 
     @Autowired
-    private DownloadHistoryMapper downloadHistoryMapper;
+    private DownloadHistoryBuffer downloadHistoryBuffer;
+
+    @Autowired
+    private ClientIpResolver clientIpResolver;
+
+    @Autowired
+    private FileContentService fileContentService;
+
+    @Autowired
+    private ObjectDiskCache objectDiskCache;
+
+    @Autowired
+    private SmallFileCache smallFileCache;
+
+    @Autowired
+    private DownloadCounter downloadCounter;
+
+    @Autowired
+    private FileInfoCache fileInfoCache;
+
+    @Autowired
+    private ExtractCodeFilter extractCodeFilter;
 
     @Value("${file.expiration-days}")
     private Integer expirationDays;
 
+    @Value("${file.stream.part-size:5MB}")
+    private DataSize streamPartSize;
+
+    @Value("${file.stream.max-file-size:2GB}")
+    private DataSize streamMaxFileSize;
+
+    @Value("${file.count-cache.max-size:10000}")
+    private long countCacheMaxSize;
+
+    /**
+     * 文件总数缓存时间，其他节点上传或删除后总数最多滞后这么久
+     */
+    @Value("${file.count-cache.ttl-seconds:60}")
+    private long countCacheTtlSeconds;
+
+    @PostConstruct
+    public void init() {
+        userFileCounts = Caffeine.newBuilder()
+                .maximumSize(countCacheMaxSize)
+                .expireAfterWrite(countCacheTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
     /**
      * 上传文件
      *
@@ -74,8 +187,9 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             String fileExtension = getFileExtension(originalFilename);
             String objectName = generateObjectName(fileExtension);
             
-            // 2. 上传到MinIO
-            inputStream = file.getInputStream();
+            // 2. 上传到MinIO，同时计算内容哈希
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            inputStream = new DigestInputStream(file.getInputStream(), digest);
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(minioConfig.getBucketName())
@@ -85,26 +199,21 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
                             .build()
             );
             
-            // 3. 生成提取码
-            String extractCode = extractCodeUtil.generateExtractCode();
+            // 3. 按内容去重
+            String contentHash = HexUtil.encodeHexStr(digest.digest());
+            String storagePath = deduplicate(contentHash, file.getSize(), objectName);
             
-            // 4. 计算过期时间
-            LocalDateTime expireTime = LocalDateTime.now().plusDays(expirationDays);
-            
-            // 5. 保存文件信息到数据库
-            FileInfo fileInfo = new FileInfo();
-            fileInfo.setUserId(userId);
-            fileInfo.setFileName(originalFilename);
-            fileInfo.setFileSize(file.getSize());
-            fileInfo.setFileType(file.getContentType());
-            fileInfo.setStoragePath(objectName);
-            fileInfo.setExtractCode(extractCode);
-            fileInfo.setDownloadCount(0);
-            fileInfo.setExpireTime(expireTime);
-            fileInfo.setCreateTime(LocalDateTime.now());
-            fileInfo.setUpdateTime(LocalDateTime.now());
-            fileInfo.setStatus(1);
-            save(fileInfo);
+            // 4. 保存文件信息到数据库，失败时归还内容引用（异常在下面被捕获，事务不会回滚）
+            FileInfo fileInfo;
+            try {
+                fileInfo = createFileRecord(originalFilename, file.getSize(), file.getContentType(),
+                        storagePath, contentHash, userId);
+            } catch (RuntimeException e) {
+                if (fileContentService.release(contentHash)) {
+                    fileContentService.removeStorageObject(storagePath);
+                }
+                throw e;
+            }
             
             return ResultUtil.success(fileInfo);
         } catch (Exception e) {
@@ -122,6 +231,158 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         }
     }
 
+    /**
+     * 流式上传文件，请求体直接写入MinIO，不经过本地磁盘暂存
+     * 不开启事务，避免在整个传输期间占用数据库连接
+     *
+     * @param inputStream 请求体输入流
+     * @param contentLength 文件大小（字节）
+     * @param fileName 文件名
+     * @param contentType 文件类型
+     * @param userId 上传用户ID
+     * @return 上传结果（含提取码）
+     */
+    @Override
+    public Result<FileInfo> uploadFileStream(InputStream inputStream, long contentLength, String fileName,
+                                             String contentType, Long userId) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return ResultUtil.paramError("文件名不能为空");
+        }
+        if (contentLength <= 0) {
+            return ResultUtil.error(411, "请求必须包含Content-Length");
+        }
+        if (contentLength > streamMaxFileSize.toBytes()) {
+            return ResultUtil.paramError("文件大小超过限制：" + streamMaxFileSize.toMegabytes() + "MB");
+        }
+
+        try {
+            // 1. 生成文件存储路径
+            String objectName = generateObjectName(getFileExtension(fileName));
+
+            // 2. 边读边传到MinIO，内存占用以分片大小为上限，同时计算内容哈希
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .object(objectName)
+                            .stream(new DigestInputStream(inputStream, digest), contentLength,
+                                    streamPartSize.toBytes())
+                            .contentType(contentType)
+                            .build()
+            );
+
+            // 3. 按内容去重
+            String contentHash = HexUtil.encodeHexStr(digest.digest());
+            String storagePath = deduplicate(contentHash, contentLength, objectName);
+
+            // 4. 保存文件信息到数据库，失败时归还内容引用
+            FileInfo fileInfo;
+            try {
+                fileInfo = createFileRecord(fileName, contentLength, contentType, storagePath, contentHash, userId);
+            } catch (RuntimeException e) {
+                if (fileContentService.release(contentHash)) {
+                    fileContentService.removeStorageObject(storagePath);
+                }
+                throw e;
+            }
+            return ResultUtil.success(fileInfo);
+        } catch (Exception e) {
+            log.error("流式上传文件失败: fileName={}, error={}", fileName, e.getMessage(), e);
+            return ResultUtil.error(500, "文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 秒传：内容已存在时只创建文件记录，不传输文件数据
+     * 客户端需同时提供哈希和文件大小，二者都匹配才视为同一内容
+     *
+     * @param contentHash 文件内容SHA-256
+     * @param fileSize 文件大小（字节）
+     * @param fileName 文件名
+     * @param contentType 文件类型
+     * @param userId 上传用户ID
+     * @return 上传结果（含提取码），内容不存在时返回404
+     */
+    @Override
+    public Result<FileInfo> instantUpload(String contentHash, long fileSize, String fileName,
+                                          String contentType, Long userId) {
+        if (contentHash == null || !SHA256_HEX.matcher(contentHash).matches()) {
+            return ResultUtil.paramError("文件哈希格式不正确");
+        }
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return ResultUtil.paramError("文件名不能为空");
+        }
+
+        String normalizedHash = contentHash.toLowerCase();
+        FileContent content = fileContentService.acquire(normalizedHash, fileSize);
+        if (content == null) {
+            return ResultUtil.error(404, "文件内容不存在，请上传文件");
+        }
+
+        try {
+            FileInfo fileInfo = createFileRecord(fileName, fileSize, contentType, content.getStoragePath(),
+                    normalizedHash, userId);
+            log.info("秒传成功: fileId={}, hash={}", fileInfo.getId(), normalizedHash);
+            return ResultUtil.success(fileInfo);
+        } catch (Exception e) {
+            if (fileContentService.release(normalizedHash)) {
+                fileContentService.removeStorageObject(content.getStoragePath());
+            }
+            log.error("秒传失败: hash={}, error={}", normalizedHash, e.getMessage(), e);
+            return ResultUtil.error(500, "文件上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 为已存入MinIO的对象创建文件记录并分配提取码
+     *
+     * @param fileName 文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型
+     * @param storagePath 存储路径
+     * @param contentHash 内容SHA-256，未参与去重时为null
+     * @param userId 上传用户ID
+     * @return 文件信息
+     */
+    @Override
+    public FileInfo createFileRecord(String fileName, long fileSize, String fileType, String storagePath,
+                                     String contentHash, Long userId) {
+        // 1. 计算过期时间
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expireTime = now.plusDays(expirationDays);
+        
+        // 2. 保存文件信息，提取码冲突（唯一索引）时重新分配
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setUserId(userId);
+        fileInfo.setFileName(fileName);
+        fileInfo.setFileSize(fileSize);
+        fileInfo.setFileType(fileType);
+        fileInfo.setStoragePath(storagePath);
+        fileInfo.setContentHash(contentHash);
+        fileInfo.setDownloadCount(0);
+        fileInfo.setExpireTime(expireTime);
+        fileInfo.setCreateTime(now);
+        // update_time不由应用写入，插入时取数据库默认值，其他节点按数据库时间增量同步
+        fileInfo.setStatus(1);
+        for (int attempt = 1; ; attempt++) {
+            fileInfo.setExtractCode(extractCodeUtil.generateExtractCode());
+            try {
+                save(fileInfo);
+                break;
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_EXTRACT_CODE_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("提取码冲突，重新分配: {}", fileInfo.getExtractCode());
+            }
+        }
+        userFileCounts.invalidate(userId);
+        // 登记到布隆过滤器，并清除该提取码此前可能缓存的"不存在"记录
+        extractCodeFilter.put(fileInfo.getExtractCode());
+        fileInfoCache.invalidateAfterCommit(fileInfo.getExtractCode());
+        return fileInfo;
+    }
+
     /**
      * 获取文件信息（通过提取码）
      *
@@ -130,13 +391,21 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
      */
     @Override
     public Result<FileInfo> getFileInfoByCode(String extractCode) {
-        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(FileInfo::getExtractCode, extractCode);
-        wrapper.eq(FileInfo::getStatus, 1);
+        // 布隆过滤器判定不存在的提取码直接拒绝，不查询缓存和数据库
+        if (!extractCodeFilter.mightContain(extractCode)) {
+            return ResultUtil.error(404, "提取码无效或文件已过期");
+        }
         
-        FileInfo fileInfo = getOne(wrapper);
+        FileInfo fileInfo = fileInfoCache.get(extractCode, code -> {
+            LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(FileInfo::getExtractCode, code);
+            wrapper.eq(FileInfo::getStatus, 1);
+            return getOne(wrapper);
+        });
         
         if (fileInfo == null) {
+            // 过滤器放行但提取码不存在，无论来自数据库还是负缓存都算一次误判
+            extractCodeFilter.recordFalsePositive();
             return ResultUtil.error(404, "提取码无效或文件已过期");
         }
         
@@ -149,91 +418,307 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
     }
 
     /**
-     * 下载文件
+     * 下载文件，支持Range请求（单段返回206，多段返回multipart/byteranges）
+     * 不开启事务：查询文件信息后立即归还连接，传输期间不占用数据库连接，
+     * 传输结束后的计数和下载历史都是异步批量写入
      *
      * @param extractCode 提取码
      * @param userId 下载用户ID
+     * @param request HTTP请求
      * @param response HTTP响应
      * @return 下载结果
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public Result<Void> downloadFile(String extractCode, Long userId, HttpServletResponse response) {
-        InputStream inputStream = null;
+    public Result<Void> downloadFile(String extractCode, Long userId, HttpServletRequest request,
+                                     HttpServletResponse response) {
         try {
-            // 1. 获取文件信息
+            // 1. 获取文件信息（短查询，连接随即归还）
             Result<FileInfo> fileInfoResult = getFileInfoByCode(extractCode);
             if (fileInfoResult.getCode() != 200) {
                 return ResultUtil.error(fileInfoResult.getCode(), fileInfoResult.getMessage());
             }
             
             FileInfo fileInfo = fileInfoResult.getData();
-            log.info("下载文件: fileId={}, fileName={}, extractCode={}", 
-                     fileInfo.getId(), fileInfo.getFileName(), extractCode);
+            long fileSize = fileInfo.getFileSize();
+            String etag = buildEtag(fileInfo);
             
-            // 2. 从MinIO获取文件
+            // 2. 解析Range请求头
+            List<HttpRange> ranges;
             try {
-                inputStream = minioClient.getObject(
-                        GetObjectArgs.builder()
-                                .bucket(minioConfig.getBucketName())
-                                .object(fileInfo.getStoragePath())
-                                .build()
-                );
-            } catch (Exception e) {
-                log.error("从MinIO获取文件失败: {}", e.getMessage());
-                return ResultUtil.error(500, "获取文件失败: " + e.getMessage());
+                ranges = resolveRanges(request, etag, fileSize);
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                return ResultUtil.error(416, "请求的范围无效");
             }
+            log.info("下载文件: fileId={}, fileName={}, extractCode={}, range={}", 
+                     fileInfo.getId(), fileInfo.getFileName(), extractCode, request.getHeader(HttpHeaders.RANGE));
             
-            // 3. 设置响应头
-            response.setContentType(fileInfo.getFileType());
-            response.setContentLengthLong(fileInfo.getFileSize());
+            // 3. 设置公共响应头
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.ETAG, etag);
             response.setHeader("Content-Disposition", "attachment;filename=" + 
                     URLEncoder.encode(fileInfo.getFileName(), "UTF-8"));
             
-            // 4. 写入响应
+            // 4. 写入响应（不持有数据库连接），内存缓存或本地磁盘缓存命中时不访问MinIO
+            DownloadSource source = resolveSource(fileInfo);
             try {
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = inputStream.read(buffer)) > 0) {
-                    response.getOutputStream().write(buffer, 0, len);
+                if (ranges.isEmpty()) {
+                    response.setContentType(fileInfo.getFileType());
+                    writeBody(source, 0, fileSize, request, response);
+                } else if (ranges.size() == 1) {
+                    writeSingleRange(fileInfo, source, ranges.get(0), request, response);
+                } else {
+                    writeMultipleRanges(fileInfo, source, ranges, response);
                 }
-                response.getOutputStream().flush();
             } catch (IOException e) {
                 log.error("写入响应流失败: {}", e.getMessage());
                 return ResultUtil.error(500, "文件传输失败: " + e.getMessage());
             }
+            if (source.memory == null && source.file == null) {
+                objectDiskCache.loadAsync(fileInfo.getStoragePath(), fileSize);
+            }
             
-            // 5. 更新下载次数
-            fileInfo.setDownloadCount(fileInfo.getDownloadCount() + 1);
-            updateById(fileInfo);
-            
-            // 6. 记录下载历史
-            if (userId != null) {
-                DownloadHistory history = new DownloadHistory();
-                history.setFileId(fileInfo.getId());
-                history.setUserId(userId);
-                history.setDownloadTime(LocalDateTime.now());
-                history.setDownloadIp(getIpAddress(response));
-                downloadHistoryMapper.insert(history);
-                log.info("记录下载历史: fileId={}, userId={}", fileInfo.getId(), userId);
+            // 5. 一次逻辑下载只记一次：只有取到文件末尾的响应计数
+            if (countsAsDownload(ranges, fileSize)) {
+                recordDownload(fileInfo, userId, request);
             }
             
             return ResultUtil.success();
         } catch (Exception e) {
             log.error("文件下载异常: {}", e.getMessage(), e);
             return ResultUtil.error(500, "文件下载失败: " + e.getMessage());
-        } finally {
-            // 确保关闭输入流
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (Exception e) {
-                    log.error("关闭输入流异常: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 更新下载次数并记录下载历史
+     */
+    private void recordDownload(FileInfo fileInfo, Long userId, HttpServletRequest request) {
+        // 1. 累加下载次数（异步批量写回）
+        downloadCounter.increment(fileInfo.getId());
+        
+        // 2. 记录下载历史（异步批量写入）
+        if (userId != null) {
+            DownloadHistory history = new DownloadHistory();
+            history.setFileId(fileInfo.getId());
+            history.setUserId(userId);
+            history.setDownloadTime(LocalDateTime.now());
+            history.setDownloadIp(clientIpResolver.resolve(request));
+            downloadHistoryBuffer.submit(history);
+        }
+    }
+
+    /**
+     * 解析Range请求头，If-Range与当前ETag不一致时按完整下载处理
+     *
+     * @return 请求的范围，为空表示完整下载
+     * @throws IllegalArgumentException 范围不可满足
+     */
+    private List<HttpRange> resolveRanges(HttpServletRequest request, String etag, long fileSize) {
+        return resolveRanges(request.getHeader(HttpHeaders.RANGE), request.getHeader(HttpHeaders.IF_RANGE),
+                etag, fileSize);
+    }
+
+    /**
+     * 解析Range请求头。语法错误的Range按RFC 7233 §3.1忽略，返回完整内容；
+     * 语法正确但不可满足（或段数过多）时抛出异常，由调用方返回416
+     *
+     * @param rangeHeader Range请求头
+     * @param ifRange If-Range请求头
+     * @param etag 当前ETag
+     * @param fileSize 文件大小
+     * @return 请求的范围，为空表示完整下载
+     * @throws IllegalArgumentException 范围不可满足
+     */
+    static List<HttpRange> resolveRanges(String rangeHeader, String ifRange, String etag, long fileSize) {
+        if (rangeHeader == null || rangeHeader.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return Collections.emptyList();
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            log.debug("忽略格式错误的Range: {}", rangeHeader);
+            return Collections.emptyList();
+        }
+        if (ranges.size() > MAX_RANGES) {
+            throw new IllegalArgumentException("Range数量过多: " + ranges.size());
+        }
+        for (HttpRange range : ranges) {
+            if (fileSize == 0 || range.getRangeStart(fileSize) >= fileSize
+                    || range.getRangeStart(fileSize) > range.getRangeEnd(fileSize)) {
+                throw new IllegalArgumentException("Range不可满足: " + range);
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 本次响应是否计为一次下载：完整下载，或某一段包含文件的最后一个字节。
+     * 播放器的 bytes=0-1 探测请求不计数，分块拉取、断点续传只在取到文件末尾时计一次
+     *
+     * @param ranges 请求的范围，为空表示完整下载
+     * @param fileSize 文件大小
+     */
+    static boolean countsAsDownload(List<HttpRange> ranges, long fileSize) {
+        if (ranges.isEmpty()) {
+            return true;
+        }
+        for (HttpRange range : ranges) {
+            if (range.getRangeEnd(fileSize) >= fileSize - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 输出单段范围（206 Partial Content）
+     */
+    private void writeSingleRange(FileInfo fileInfo, DownloadSource source, HttpRange range,
+                                  HttpServletRequest request, HttpServletResponse response) throws Exception {
+        long fileSize = fileInfo.getFileSize();
+        long start = range.getRangeStart(fileSize);
+        long end = range.getRangeEnd(fileSize);
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType(fileInfo.getFileType());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileSize);
+        writeBody(source, start, end - start + 1, request, response);
+    }
+
+    /**
+     * 输出多段范围（206 multipart/byteranges）
+     */
+    private void writeMultipleRanges(FileInfo fileInfo, DownloadSource source, List<HttpRange> ranges,
+                                     HttpServletResponse response) throws Exception {
+        long fileSize = fileInfo.getFileSize();
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        String partContentType = fileInfo.getFileType() != null ? fileInfo.getFileType()
+                : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        OutputStream out = response.getOutputStream();
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(fileSize);
+            long end = range.getRangeEnd(fileSize);
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + partContentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + fileSize + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            copyRange(source, start, end - start + 1, out);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * 选择下载数据来源：小文件走内存缓存，其余先查本地磁盘缓存，未命中时直接读MinIO
+     */
+    private DownloadSource resolveSource(FileInfo fileInfo) throws Exception {
+        String storagePath = fileInfo.getStoragePath();
+        long fileSize = fileInfo.getFileSize();
+        if (smallFileCache.accepts(fileSize)) {
+            return new DownloadSource(storagePath, smallFileCache.get(storagePath, fileSize), null);
+        }
+        return new DownloadSource(storagePath, null, objectDiskCache.lookup(storagePath, fileSize));
+    }
+
+    /**
+     * 输出一段连续内容。磁盘缓存命中且容器支持时交给Tomcat sendfile，由内核直接把文件写入socket
+     */
+    private void writeBody(DownloadSource source, long offset, long length,
+                           HttpServletRequest request, HttpServletResponse response) throws Exception {
+        response.setContentLengthLong(length);
+        if (source.file != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, source.file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, offset);
+            request.setAttribute(SENDFILE_END_ATTR, offset + length);
+            objectDiskCache.recordServed(length);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        copyRange(source, offset, length, out);
+        out.flush();
+    }
+
+    /**
+     * 复制指定范围的内容：内存缓存直接写出，磁盘缓存按缓冲区读取缓存文件，否则从MinIO读取
+     */
+    private void copyRange(DownloadSource source, long offset, long length, OutputStream out) throws Exception {
+        if (source.memory != null) {
+            ByteBuffer slice = source.memory.duplicate();
+            slice.position((int) offset);
+            slice.limit((int) (offset + length));
+            WritableByteChannel target = Channels.newChannel(out);
+            while (slice.hasRemaining()) {
+                target.write(slice);
+            }
+            return;
+        }
+        if (source.file == null) {
+            writeObjectRange(source.storagePath, offset, length, out);
+            return;
+        }
+        // 输出流不是通道，transferTo在这里也只是经由缓冲区复制，直接按缓冲区读写
+        try (FileChannel channel = FileChannel.open(source.file, StandardOpenOption.READ)) {
+            byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+            ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                wrapped.clear();
+                wrapped.limit((int) Math.min(buffer.length, remaining));
+                int read = channel.read(wrapped, position);
+                if (read <= 0) {
+                    throw new IOException("缓存文件长度不足: " + source.file);
                 }
+                out.write(buffer, 0, read);
+                position += read;
+                remaining -= read;
+            }
+        }
+        objectDiskCache.recordServed(length);
+    }
+
+    /**
+     * 从MinIO读取对象的指定范围并写入输出流
+     */
+    private void writeObjectRange(String storagePath, long offset, long length, OutputStream out)
+            throws Exception {
+        GetObjectArgs.Builder args = GetObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(storagePath);
+        if (offset > 0) {
+            args.offset(offset);
+        }
+        if (length > 0) {
+            args.length(length);
+        }
+        try (InputStream inputStream = minioClient.getObject(args.build())) {
+            byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+            int len;
+            while ((len = inputStream.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
             }
         }
     }
 
+    /**
+     * 生成文件ETag，文件内容在记录生命周期内不会变化
+     */
+    private String buildEtag(FileInfo fileInfo) {
+        String tag = fileInfo.getContentHash() != null ? fileInfo.getContentHash() : fileInfo.getStoragePath();
+        return "\"" + tag + "\"";
+    }
+
     /**
      * 获取用户上传的文件列表
      *
@@ -251,6 +736,94 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         return ResultUtil.success(fileList);
     }
 
+    /**
+     * 分页获取用户上传的文件列表
+     * 以(create_time, id)为游标做keyset分页，走(user_id, status, create_time, id)索引，翻页深度不影响性能
+     *
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，为空表示第一页
+     * @param size 每页数量
+     * @param withTotal 是否返回文件总数
+     * @return 文件分页
+     */
+    @Override
+    public Result<FilePageVo> getUserFilesPage(Long userId, String cursor, int size, boolean withTotal) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        
+        // 1. 解析游标
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+                cursorTime = LocalDateTime.parse(parts[0]);
+                cursorId = Long.valueOf(parts[1]);
+            } catch (RuntimeException e) {
+                return ResultUtil.paramError("无效的分页游标");
+            }
+        }
+        
+        // 2. 只查询列表需要的列，多取一条用于判断是否还有下一页
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(FileInfo::getId, FileInfo::getFileName, FileInfo::getFileSize, FileInfo::getFileType,
+                FileInfo::getExtractCode, FileInfo::getDownloadCount, FileInfo::getExpireTime, FileInfo::getCreateTime);
+        wrapper.eq(FileInfo::getUserId, userId);
+        wrapper.eq(FileInfo::getStatus, 1);
+        if (cursorTime != null) {
+            LocalDateTime time = cursorTime;
+            Long id = cursorId;
+            wrapper.and(w -> w.lt(FileInfo::getCreateTime, time)
+                    .or(o -> o.eq(FileInfo::getCreateTime, time).lt(FileInfo::getId, id)));
+        }
+        wrapper.orderByDesc(FileInfo::getCreateTime, FileInfo::getId);
+        wrapper.last("LIMIT " + (pageSize + 1));
+        List<FileInfo> rows = list(wrapper);
+        
+        // 3. 组装结果
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        List<FileSummaryVo> records = new ArrayList<>(rows.size());
+        for (FileInfo row : rows) {
+            records.add(FileSummaryVo.builder()
+                    .id(row.getId())
+                    .fileName(row.getFileName())
+                    .fileSize(row.getFileSize())
+                    .fileType(row.getFileType())
+                    .extractCode(row.getExtractCode())
+                    .downloadCount(row.getDownloadCount())
+                    .expireTime(row.getExpireTime())
+                    .createTime(row.getCreateTime())
+                    .build());
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            FileInfo last = rows.get(rows.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getCreateTime() + "," + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        return ResultUtil.success(FilePageVo.builder()
+                .records(records)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .total(withTotal ? countUserFiles(userId) : null)
+                .build());
+    }
+
+    /**
+     * 用户有效文件总数，短时间缓存，上传和删除时失效
+     */
+    private long countUserFiles(Long userId) {
+        return userFileCounts.get(userId, id -> {
+            LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+            wrapper.eq(FileInfo::getUserId, id);
+            wrapper.eq(FileInfo::getStatus, 1);
+            return count(wrapper);
+        });
+    }
+
     /**
      * 删除文件
      *
@@ -273,13 +846,19 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
                 return ResultUtil.error(403, "无权删除该文件");
             }
             
-            // 3. 使用MyBatis-Plus的逻辑删除
-            boolean result = removeById(fileId);
+            // 3. 逻辑删除，同时更新update_time，其他节点据此失效缓存
+            boolean result = baseMapper.retireByIds(Collections.singletonList(fileId)) > 0;
             if (!result) {
                 return ResultUtil.error(500, "删除文件失败");
             }
             
-            // 注：不从MinIO中删除实际文件，留待定时任务清理
+            fileInfoCache.invalidateAfterCommit(fileInfo.getExtractCode());
+            userFileCounts.invalidate(userId);
+            
+            // 4. 释放内容引用，最后一个引用释放时在事务提交后删除MinIO对象
+            if (fileContentService.release(fileInfo.getContentHash())) {
+                fileContentService.removeStorageObjectAfterCommit(fileInfo.getStoragePath());
+            }
             
             return ResultUtil.success();
         } catch (Exception e) {
@@ -288,6 +867,51 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
         }
     }
 
+    /**
+     * 批量回收过期文件：锁定仍有效的记录，一条UPDATE完成逻辑删除并释放内容引用
+     * MinIO对象不在事务内删除，由调用方在提交后批量删除
+     *
+     * @param fileIds 过期文件ID
+     * @return 回收结果，包括回收的文件数和需要删除的存储路径
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public RetireResult retireFiles(List<Long> fileIds) {
+        RetireResult result = new RetireResult();
+        if (fileIds.isEmpty()) {
+            return result;
+        }
+        
+        // 1. 锁定仍有效的记录，避免与用户删除并发时重复释放引用
+        List<FileInfo> locked = lambdaQuery()
+                .select(FileInfo::getId, FileInfo::getUserId, FileInfo::getExtractCode,
+                        FileInfo::getStoragePath, FileInfo::getContentHash)
+                .in(FileInfo::getId, fileIds)
+                .eq(FileInfo::getStatus, 1)
+                .last("FOR UPDATE")
+                .list();
+        if (locked.isEmpty()) {
+            return result;
+        }
+        
+        // 2. 批量逻辑删除
+        List<Long> lockedIds = new ArrayList<>(locked.size());
+        for (FileInfo fileInfo : locked) {
+            lockedIds.add(fileInfo.getId());
+        }
+        baseMapper.retireByIds(lockedIds);
+        result.retiredCount = locked.size();
+        
+        // 3. 释放内容引用，收集已无引用的存储对象
+        for (FileInfo fileInfo : locked) {
+            fileInfoCache.invalidateAfterCommit(fileInfo.getExtractCode());
+            userFileCounts.invalidate(fileInfo.getUserId());
+            if (fileContentService.release(fileInfo.getContentHash())) {
+                result.storagePaths.add(fileInfo.getStoragePath());
+            }
+        }
+        return result;
+    }
+
     /**
      * 重置文件提取码
      *
@@ -309,13 +933,27 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             return ResultUtil.error(403, "无权重置该文件的提取码");
         }
         
-        // 3. 生成新的提取码
-        String newExtractCode = extractCodeUtil.generateExtractCode();
-        
-        // 4. 更新文件信息
-        fileInfo.setExtractCode(newExtractCode);
-        fileInfo.setUpdateTime(LocalDateTime.now());
-        updateById(fileInfo);
+        // 3. 生成新的提取码并更新，只更新提取码相关字段，避免用旧值覆盖并发写回的下载次数
+        String newExtractCode;
+        for (int attempt = 1; ; attempt++) {
+            newExtractCode = extractCodeUtil.generateExtractCode();
+            try {
+                lambdaUpdate()
+                        .set(FileInfo::getExtractCode, newExtractCode)
+                        .setSql("update_time = NOW()")
+                        .eq(FileInfo::getId, fileId)
+                        .update();
+                break;
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_EXTRACT_CODE_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("提取码冲突，重新分配: {}", newExtractCode);
+            }
+        }
+        extractCodeFilter.put(newExtractCode);
+        fileInfoCache.invalidateAfterCommit(fileInfo.getExtractCode());
+        fileInfoCache.invalidateAfterCommit(newExtractCode);
         
         return ResultUtil.success(newExtractCode);
     }
@@ -326,7 +964,7 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
      * @param filename 文件名
      * @return 扩展名
      */
-    private String getFileExtension(String filename) {
+    public String getFileExtension(String filename) {
         if (filename == null || filename.lastIndexOf(".") == -1) {
             return "";
         }
@@ -339,18 +977,26 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
      * @param extension 文件扩展名
      * @return 存储路径
      */
-    private String generateObjectName(String extension) {
+    public String generateObjectName(String extension) {
         return UUID.randomUUID().toString().replace("-", "") + extension;
     }
     
     /**
-     * 获取客户端IP地址
+     * 按内容去重：相同内容已存在时删除刚上传的副本并引用已有对象
+     *
+     * @param contentHash 内容SHA-256
+     * @param fileSize 文件大小（字节）
+     * @param objectName 刚上传的对象名称
+     * @return 最终使用的存储路径
      */
-    private String getIpAddress(HttpServletResponse response) {
-        // 固定返回值，因为无法从响应对象获取IP地址
-        return "0.0.0.0";
+    public String deduplicate(String contentHash, long fileSize, String objectName) {
+        String storagePath = fileContentService.register(contentHash, fileSize, objectName);
+        if (!storagePath.equals(objectName)) {
+            fileContentService.removeStorageObject(objectName);
+        }
+        return storagePath;
     }
-
+    
     /**
      * 生成文件预签名下载链接
      *
@@ -358,7 +1004,6 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
      * @return 预签名下载链接信息
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public Result<Map<String, String>> generatePresignedUrl(String extractCode) {
         try {
             // 1. 获取文件信息
@@ -380,9 +1025,8 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
                             .build()
             );
             
-            // 3. 增加下载次数
-            fileInfo.setDownloadCount(fileInfo.getDownloadCount() + 1);
-            updateById(fileInfo);
+            // 3. 增加下载次数（异步批量写回）
+            downloadCounter.increment(fileInfo.getId());
             
             // 4. 构建返回信息
             Map<String, String> result = new HashMap<>();
@@ -401,4 +1045,46 @@ public class FileServiceImpl extends ServiceImpl<FileInfoMapper, FileInfo> imple
             return ResultUtil.error(500, "生成下载链接失败：" + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * 批量回收结果
+     */
+    public static class RetireResult {
+
+        private int retiredCount;
+
+        private final List<String> storagePaths = new ArrayList<>();
+
+        /**
+         * 实际回收的文件数
+         */
+        public int getRetiredCount() {
+            return retiredCount;
+        }
+
+        /**
+         * 已无引用、需要删除的存储路径
+         */
+        public List<String> getStoragePaths() {
+            return storagePaths;
+        }
+    }
+
+    /**
+     * 下载数据来源：内存缓存、本地磁盘缓存或MinIO（两者都为空时）
+     */
+    private static class DownloadSource {
+
+        private final String storagePath;
+
+        private final ByteBuffer memory;
+
+        private final Path file;
+
+        DownloadSource(String storagePath, ByteBuffer memory, Path file) {
+            this.storagePath = storagePath;
+            this.memory = memory;
+            this.file = file;
+        }
+    }
+}
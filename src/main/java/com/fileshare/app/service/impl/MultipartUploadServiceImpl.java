@@ -0,0 +1,548 @@
+package com.fileshare.app.service.impl;
+
+import cn.hutool.core.util.HexUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fileshare.app.config.MinioConfig;
+import com.fileshare.app.entity.FileContent;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.entity.UploadSession;
+import com.fileshare.app.mapper.FileContentMapper;
+import com.fileshare.app.mapper.FileInfoMapper;
+import com.fileshare.app.mapper.UploadSessionMapper;
+import com.fileshare.app.service.FileContentService;
+import com.fileshare.app.service.MultipartUploadService;
+import com.fileshare.app.util.MinioMultipartClient;
+import com.fileshare.app.util.ResultUtil;
+import com.fileshare.app.util.ResultUtil.Result;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.messages.Part;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片上传服务实现类
+ * 基于MinIO原生分片上传：分片直接写入MinIO，可并行、可重传，
+ * 只有在合并完成后才创建文件记录和提取码
+ */
+@Service
+public class MultipartUploadServiceImpl extends ServiceImpl<UploadSessionMapper, UploadSession>
+        implements MultipartUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(MultipartUploadServiceImpl.class);
+
+    private static final int STATE_ABORTED = 0;
+    private static final int STATE_UPLOADING = 1;
+    private static final int STATE_COMPLETING = 2;
+    private static final int STATE_COMPLETED = 3;
+    private static final int STATE_FAILED = 4;
+
+    /**
+     * S3协议要求除最后一个分片外，每个分片不小于5MB
+     */
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024;
+
+    /**
+     * S3协议允许的最大分片数
+     */
+    private static final int MAX_PARTS = 10000;
+
+    /**
+     * 分片大小上限，保证分片长度在各处都能按int处理
+     */
+    private static final long MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private MinioMultipartClient minioMultipartClient;
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @Autowired
+    private MinioConfig minioConfig;
+
+    @Autowired
+    private FileServiceImpl fileService;
+
+    @Autowired
+    private FileContentService fileContentService;
+
+    @Autowired
+    private FileInfoMapper fileInfoMapper;
+
+    @Autowired
+    private FileContentMapper fileContentMapper;
+
+    @Value("${file.multipart.chunk-size:5MB}")
+    private DataSize chunkSize;
+
+    @Value("${file.multipart.max-file-size:2GB}")
+    private DataSize maxFileSize;
+
+    @Value("${file.multipart.session-expire-hours:24}")
+    private Integer sessionExpireHours;
+
+    @Value("${file.multipart.completing-timeout-minutes:30}")
+    private Integer completingTimeoutMinutes;
+
+    /**
+     * 初始化分片上传
+     *
+     * @param fileName 文件名
+     * @param fileSize 文件大小（字节）
+     * @param contentType 文件类型
+     * @param userId 上传用户ID
+     * @return 上传会话（含uploadId、分片大小、分片总数）
+     */
+    @Override
+    public Result<UploadSession> initUpload(String fileName, Long fileSize, String contentType, Long userId) {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return ResultUtil.paramError("文件名不能为空");
+        }
+        if (fileSize == null || fileSize <= 0) {
+            return ResultUtil.paramError("文件大小无效");
+        }
+        if (fileSize > maxFileSize.toBytes()) {
+            return ResultUtil.paramError("文件大小超过限制：" + maxFileSize.toMegabytes() + "MB");
+        }
+
+        long partSize = Math.max(chunkSize.toBytes(), MIN_CHUNK_SIZE);
+        if (partSize > MAX_CHUNK_SIZE) {
+            log.error("分片大小配置过大: {}", chunkSize);
+            return ResultUtil.error(500, "分片大小配置无效");
+        }
+        long totalParts = (fileSize + partSize - 1) / partSize;
+        if (totalParts > MAX_PARTS) {
+            return ResultUtil.paramError("分片数量超过限制");
+        }
+
+        try {
+            // 1. 在MinIO中创建分片上传任务
+            String objectName = fileService.generateObjectName(fileService.getFileExtension(fileName));
+            String uploadId = minioMultipartClient.createMultipartUpload(
+                    minioConfig.getBucketName(), objectName, contentType);
+
+            // 2. 记录上传会话
+            UploadSession session = new UploadSession();
+            session.setUploadId(uploadId);
+            session.setUserId(userId);
+            session.setFileName(fileName);
+            session.setFileSize(fileSize);
+            session.setFileType(contentType);
+            session.setStoragePath(objectName);
+            session.setChunkSize(partSize);
+            session.setTotalParts((int) totalParts);
+            session.setState(STATE_UPLOADING);
+            session.setCreateTime(LocalDateTime.now());
+            session.setUpdateTime(LocalDateTime.now());
+            save(session);
+
+            log.info("初始化分片上传: uploadId={}, fileName={}, totalParts={}", uploadId, fileName, totalParts);
+            return ResultUtil.success(session);
+        } catch (Exception e) {
+            log.error("初始化分片上传失败: {}", e.getMessage(), e);
+            return ResultUtil.error(500, "初始化分片上传失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 上传单个分片，同一分片可重复上传（后一次覆盖前一次）
+     *
+     * @param uploadId 上传ID
+     * @param partNumber 分片号（从1开始）
+     * @param inputStream 分片数据
+     * @param contentLength 分片长度
+     * @param userId 上传用户ID
+     * @return 分片号及ETag
+     */
+    @Override
+    public Result<Map<String, Object>> uploadPart(String uploadId, Integer partNumber, InputStream inputStream,
+                                                  long contentLength, Long userId) {
+        Result<UploadSession> sessionResult = getActiveSession(uploadId, userId);
+        if (sessionResult.getCode() != 200) {
+            return ResultUtil.error(sessionResult.getCode(), sessionResult.getMessage());
+        }
+        UploadSession session = sessionResult.getData();
+
+        if (partNumber == null || partNumber < 1 || partNumber > session.getTotalParts()) {
+            return ResultUtil.paramError("分片号无效");
+        }
+
+        // 除最后一个分片外，分片大小必须与会话约定一致
+        long expectedSize = expectedPartSize(session, partNumber);
+        if (contentLength != expectedSize) {
+            return ResultUtil.paramError("分片大小不正确，期望" + expectedSize + "字节");
+        }
+
+        try {
+            String etag = minioMultipartClient.uploadPart(minioConfig.getBucketName(),
+                    session.getStoragePath(), uploadId, partNumber, inputStream, expectedSize);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("partNumber", partNumber);
+            result.put("etag", etag);
+            return ResultUtil.success(result);
+        } catch (Exception e) {
+            log.error("上传分片失败: uploadId={}, partNumber={}, error={}", uploadId, partNumber, e.getMessage());
+            return ResultUtil.error(500, "上传分片失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询上传进度，用于断点续传
+     *
+     * @param uploadId 上传ID
+     * @param userId 上传用户ID
+     * @return 会话信息及已上传的分片号
+     */
+    @Override
+    public Result<Map<String, Object>> getUploadProgress(String uploadId, Long userId) {
+        Result<UploadSession> sessionResult = getActiveSession(uploadId, userId);
+        if (sessionResult.getCode() != 200) {
+            return ResultUtil.error(sessionResult.getCode(), sessionResult.getMessage());
+        }
+        UploadSession session = sessionResult.getData();
+
+        try {
+            List<Integer> uploadedParts = new ArrayList<>();
+            for (Part part : minioMultipartClient.listParts(minioConfig.getBucketName(),
+                    session.getStoragePath(), uploadId)) {
+                uploadedParts.add(part.partNumber());
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("uploadId", uploadId);
+            result.put("fileName", session.getFileName());
+            result.put("fileSize", session.getFileSize());
+            result.put("chunkSize", session.getChunkSize());
+            result.put("totalParts", session.getTotalParts());
+            result.put("uploadedParts", uploadedParts);
+            return ResultUtil.success(result);
+        } catch (Exception e) {
+            log.error("查询分片上传进度失败: uploadId={}, error={}", uploadId, e.getMessage());
+            return ResultUtil.error(500, "查询上传进度失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 合并分片，生成文件记录和提取码
+     *
+     * @param uploadId 上传ID
+     * @param userId 上传用户ID
+     * @return 文件信息（含提取码）
+     */
+    @Override
+    public Result<FileInfo> completeUpload(String uploadId, Long userId) {
+        Result<UploadSession> sessionResult = getActiveSession(uploadId, userId);
+        if (sessionResult.getCode() != 200) {
+            return ResultUtil.error(sessionResult.getCode(), sessionResult.getMessage());
+        }
+        UploadSession session = sessionResult.getData();
+
+        // 1. 抢占合并权，避免重复提交导致重复合并
+        if (!changeState(session.getId(), STATE_UPLOADING, STATE_COMPLETING)) {
+            return ResultUtil.error(409, "上传正在合并或已结束");
+        }
+
+        try {
+            // 2. 校验分片是否齐全
+            List<Part> parts = minioMultipartClient.listParts(minioConfig.getBucketName(),
+                    session.getStoragePath(), uploadId);
+            List<Integer> missingParts = findMissingParts(session, parts);
+            if (!missingParts.isEmpty()) {
+                changeState(session.getId(), STATE_COMPLETING, STATE_UPLOADING);
+                return ResultUtil.error(400, "分片未上传完整，缺少分片：" + missingParts);
+            }
+
+            // 3. 合并分片
+            Part[] completedParts = new Part[parts.size()];
+            for (int i = 0; i < parts.size(); i++) {
+                completedParts[i] = new Part(parts.get(i).partNumber(), parts.get(i).etag());
+            }
+            minioMultipartClient.completeMultipartUpload(minioConfig.getBucketName(),
+                    session.getStoragePath(), uploadId, completedParts);
+        } catch (Exception e) {
+            log.error("合并分片失败: uploadId={}, error={}", uploadId, e.getMessage(), e);
+            changeState(session.getId(), STATE_COMPLETING, STATE_UPLOADING);
+            return ResultUtil.error(500, "合并分片失败：" + e.getMessage());
+        }
+
+        // 4. 计算内容哈希。分片可乱序、可重传，只能在合并后读回整个对象计算；
+        //    读取失败时不去重，按独占对象保存
+        String contentHash = null;
+        try {
+            contentHash = computeContentHash(session.getStoragePath());
+        } catch (Exception e) {
+            log.warn("计算分片上传内容哈希失败，跳过去重: uploadId={}, error={}", uploadId, e.getMessage());
+        }
+
+        // 合并和计算哈希耗时较长时会话可能已被清理任务判定为超时，刷新更新时间并确认仍持有合并权
+        if (!changeState(session.getId(), STATE_COMPLETING, STATE_COMPLETING)) {
+            log.warn("合并完成时会话已被清理: uploadId={}", uploadId);
+            return ResultUtil.error(409, "上传已超时，请重新上传");
+        }
+
+        // 5. 按内容去重，并把最终存储路径记到会话上，节点中断时清理任务据此判断文件记录是否已创建
+        String storagePath = session.getStoragePath();
+        try {
+            if (contentHash != null) {
+                storagePath = fileService.deduplicate(contentHash, session.getFileSize(), storagePath);
+            }
+        } catch (Exception e) {
+            log.error("分片上传内容去重失败: uploadId={}, error={}", uploadId, e.getMessage(), e);
+            changeState(session.getId(), STATE_COMPLETING, STATE_FAILED);
+            List<String> failed = fileContentService.removeStorageObjects(Collections.singletonList(storagePath));
+            if (!failed.isEmpty()) {
+                log.warn("删除合并后的对象失败，留待存储对账清理: {}", storagePath);
+            }
+            return ResultUtil.error(500, "保存文件记录失败，请重新上传");
+        }
+        if (!storagePath.equals(session.getStoragePath())) {
+            try {
+                changeStoragePath(session.getId(), storagePath);
+            } catch (Exception e) {
+                log.warn("更新会话存储路径失败: uploadId={}, error={}", uploadId, e.getMessage());
+            }
+        }
+
+        try {
+            // 6. 创建文件记录和提取码
+            FileInfo fileInfo = fileService.createFileRecord(session.getFileName(), session.getFileSize(),
+                    session.getFileType(), storagePath, contentHash, session.getUserId());
+
+            changeState(session.getId(), STATE_COMPLETING, STATE_COMPLETED);
+            log.info("分片上传完成: uploadId={}, fileId={}", uploadId, fileInfo.getId());
+            return ResultUtil.success(fileInfo);
+        } catch (Exception e) {
+            // MinIO侧的分片上传已经合并，会话无法再回到上传中，标记失败并归还内容引用
+            log.error("合并后创建文件记录失败: uploadId={}, error={}", uploadId, e.getMessage(), e);
+            changeState(session.getId(), STATE_COMPLETING, STATE_FAILED);
+            if (fileContentService.release(contentHash)) {
+                List<String> failed = fileContentService.removeStorageObjects(Collections.singletonList(storagePath));
+                if (!failed.isEmpty()) {
+                    log.warn("删除合并后的对象失败，留待存储对账清理: {}", storagePath);
+                }
+            }
+            return ResultUtil.error(500, "保存文件记录失败，请重新上传");
+        }
+    }
+
+    /**
+     * 取消分片上传
+     *
+     * @param uploadId 上传ID
+     * @param userId 上传用户ID
+     * @return 取消结果
+     */
+    @Override
+    public Result<Void> abortUpload(String uploadId, Long userId) {
+        Result<UploadSession> sessionResult = getActiveSession(uploadId, userId);
+        if (sessionResult.getCode() != 200) {
+            return ResultUtil.error(sessionResult.getCode(), sessionResult.getMessage());
+        }
+
+        if (!abortSession(sessionResult.getData())) {
+            return ResultUtil.error(500, "取消上传失败");
+        }
+        return ResultUtil.success();
+    }
+
+    /**
+     * 清理超时未完成的上传会话
+     * 包括超时的上传中会话，以及节点在合并过程中宕机而停留在合并中的会话
+     *
+     * @return 清理的会话数
+     */
+    @Override
+    public int cleanExpiredSessions() {
+        LambdaQueryWrapper<UploadSession> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(UploadSession::getState, STATE_UPLOADING);
+        wrapper.lt(UploadSession::getCreateTime, LocalDateTime.now().minusHours(sessionExpireHours));
+
+        int cleaned = 0;
+        for (UploadSession session : list(wrapper)) {
+            if (abortSession(session)) {
+                cleaned++;
+            }
+        }
+
+        LambdaQueryWrapper<UploadSession> completingWrapper = new LambdaQueryWrapper<>();
+        completingWrapper.eq(UploadSession::getState, STATE_COMPLETING);
+        completingWrapper.lt(UploadSession::getUpdateTime,
+                LocalDateTime.now().minusMinutes(completingTimeoutMinutes));
+        for (UploadSession session : list(completingWrapper)) {
+            if (expireCompletingSession(session)) {
+                cleaned++;
+            }
+        }
+        return cleaned;
+    }
+
+    /**
+     * 取消MinIO上的分片上传并标记会话
+     */
+    private boolean abortSession(UploadSession session) {
+        if (!changeState(session.getId(), STATE_UPLOADING, STATE_ABORTED)) {
+            return false;
+        }
+        try {
+            minioMultipartClient.abortMultipartUpload(minioConfig.getBucketName(),
+                    session.getStoragePath(), session.getUploadId());
+            log.info("已取消分片上传: uploadId={}", session.getUploadId());
+        } catch (Exception e) {
+            // 会话已标记为取消，MinIO侧残留的分片由MinIO的生命周期策略兜底
+            log.warn("取消MinIO分片上传失败: uploadId={}, error={}", session.getUploadId(), e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * 结束停留在合并中的会话
+     * 文件记录已创建说明只差最后一步状态更新，直接补记为已完成；
+     * 否则标记失败，取消MinIO上的分片上传，并删除可能已合并出的对象
+     */
+    private boolean expireCompletingSession(UploadSession session) {
+        LambdaQueryWrapper<FileInfo> fileWrapper = new LambdaQueryWrapper<>();
+        fileWrapper.eq(FileInfo::getStoragePath, session.getStoragePath());
+        if (fileInfoMapper.selectCount(fileWrapper) > 0) {
+            if (!changeState(session.getId(), STATE_COMPLETING, STATE_COMPLETED)) {
+                return false;
+            }
+            log.info("合并中会话已有文件记录，补记为已完成: uploadId={}", session.getUploadId());
+            return true;
+        }
+
+        if (!changeState(session.getId(), STATE_COMPLETING, STATE_FAILED)) {
+            return false;
+        }
+        try {
+            minioMultipartClient.abortMultipartUpload(minioConfig.getBucketName(),
+                    session.getStoragePath(), session.getUploadId());
+        } catch (Exception e) {
+            // 分片已合并时MinIO会返回上传不存在，属于正常情况
+            log.debug("取消MinIO分片上传失败: uploadId={}, error={}", session.getUploadId(), e.getMessage());
+        }
+
+        // 对象已登记为去重内容时仍被其他文件引用，不能删除
+        LambdaQueryWrapper<FileContent> contentWrapper = new LambdaQueryWrapper<>();
+        contentWrapper.eq(FileContent::getStoragePath, session.getStoragePath());
+        if (fileContentMapper.selectCount(contentWrapper) > 0) {
+            log.warn("合并中会话的对象已登记为文件内容，保留对象: uploadId={}", session.getUploadId());
+        } else {
+            List<String> failed = fileContentService.removeStorageObjects(
+                    Collections.singletonList(session.getStoragePath()));
+            if (!failed.isEmpty()) {
+                log.warn("删除合并后的对象失败，留待存储对账清理: {}", session.getStoragePath());
+            }
+        }
+        log.info("已清理停留在合并中的会话: uploadId={}", session.getUploadId());
+        return true;
+    }
+
+    /**
+     * 获取当前用户正在上传中的会话
+     */
+    private Result<UploadSession> getActiveSession(String uploadId, Long userId) {
+        LambdaQueryWrapper<UploadSession> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(UploadSession::getUploadId, uploadId);
+        UploadSession session = getOne(wrapper);
+
+        if (session == null) {
+            return ResultUtil.error(404, "上传任务不存在");
+        }
+        if (!session.getUserId().equals(userId)) {
+            return ResultUtil.error(403, "无权操作该上传任务");
+        }
+        if (session.getState() != STATE_UPLOADING) {
+            return ResultUtil.error(409, "上传任务已结束");
+        }
+        return ResultUtil.success(session);
+    }
+
+    /**
+     * 读回合并后的对象，计算内容SHA-256
+     */
+    private String computeContentHash(String storagePath) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream inputStream = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(minioConfig.getBucketName())
+                .object(storagePath)
+                .build())) {
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int len;
+            while ((len = inputStream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 去重后改用已有内容时，更新合并中会话的存储路径
+     */
+    private void changeStoragePath(Long sessionId, String storagePath) {
+        lambdaUpdate()
+                .set(UploadSession::getStoragePath, storagePath)
+                .set(UploadSession::getUpdateTime, LocalDateTime.now())
+                .eq(UploadSession::getId, sessionId)
+                .eq(UploadSession::getState, STATE_COMPLETING)
+                .update();
+    }
+
+    /**
+     * 条件更新会话状态，返回是否更新成功
+     */
+    private boolean changeState(Long sessionId, int fromState, int toState) {
+        return lambdaUpdate()
+                .set(UploadSession::getState, toState)
+                .set(UploadSession::getUpdateTime, LocalDateTime.now())
+                .eq(UploadSession::getId, sessionId)
+                .eq(UploadSession::getState, fromState)
+                .update();
+    }
+
+    /**
+     * 计算指定分片应有的大小
+     */
+    private long expectedPartSize(UploadSession session, int partNumber) {
+        if (partNumber < session.getTotalParts()) {
+            return session.getChunkSize();
+        }
+        return session.getFileSize() - session.getChunkSize() * (session.getTotalParts() - 1);
+    }
+
+    /**
+     * 找出尚未上传的分片号
+     */
+    private List<Integer> findMissingParts(UploadSession session, List<Part> parts) {
+        boolean[] uploaded = new boolean[session.getTotalParts() + 1];
+        for (Part part : parts) {
+            if (part.partNumber() >= 1 && part.partNumber() <= session.getTotalParts()) {
+                uploaded[part.partNumber()] = true;
+            }
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 1; i <= session.getTotalParts(); i++) {
+            if (!uploaded[i]) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+}
@@ -0,0 +1,107 @@
+package com.fileshare.app.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fileshare.app.entity.TaskLease;
+import com.fileshare.app.mapper.TaskLeaseMapper;
+import com.fileshare.app.service.TaskLeaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+/**
+ * 任务租约服务实现类
+ */
+@Service
+public class TaskLeaseServiceImpl extends ServiceImpl<TaskLeaseMapper, TaskLease> implements TaskLeaseService {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskLeaseServiceImpl.class);
+
+    /**
+     * 节点标识：主机名@进程号 + 随机后缀，同一主机上的多个实例也能区分
+     */
+    private final String ownerId = ManagementFactory.getRuntimeMXBean().getName()
+            + ":" + UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * 获取或续期租约
+     *
+     * @param leaseKey 租约键
+     * @param leaseSeconds 租约时长（秒）
+     * @return 是否持有租约
+     */
+    @Override
+    public boolean tryAcquire(String leaseKey, long leaseSeconds) {
+        try {
+            baseMapper.insertIfAbsent(leaseKey);
+            boolean acquired = baseMapper.acquire(leaseKey, ownerId, leaseSeconds) > 0;
+            log.debug("获取租约: key={}, owner={}, acquired={}", leaseKey, ownerId, acquired);
+            return acquired;
+        } catch (Exception e) {
+            log.warn("获取租约失败: key={}, error={}", leaseKey, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 释放租约
+     *
+     * @param leaseKey 租约键
+     */
+    @Override
+    public void release(String leaseKey) {
+        try {
+            baseMapper.release(leaseKey, ownerId);
+        } catch (Exception e) {
+            log.warn("释放租约失败，等待自然到期: key={}, error={}", leaseKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 标记分片已完成
+     *
+     * @param leaseKey 租约键
+     */
+    @Override
+    public void markFinished(String leaseKey) {
+        baseMapper.finish(leaseKey, ownerId);
+    }
+
+    /**
+     * 分片是否已完成
+     *
+     * @param leaseKey 租约键
+     */
+    @Override
+    public boolean isFinished(String leaseKey) {
+        LambdaQueryWrapper<TaskLease> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(TaskLease::getLeaseKey, leaseKey);
+        wrapper.isNotNull(TaskLease::getFinishTime);
+        return count(wrapper) > 0;
+    }
+
+    /**
+     * 删除早于指定天数的分片租约记录
+     *
+     * @param prefix 租约键前缀
+     * @param days 保留天数
+     */
+    @Override
+    public void deleteStale(String prefix, int days) {
+        int deleted = baseMapper.deleteStale(prefix, days);
+        if (deleted > 0) {
+            log.info("清理过期租约记录 {} 条: prefix={}", deleted, prefix);
+        }
+    }
+
+    /**
+     * 当前节点标识
+     */
+    @Override
+    public String getOwnerId() {
+        return ownerId;
+    }
+}
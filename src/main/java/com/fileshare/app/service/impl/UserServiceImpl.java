@@ -1,15 +1,16 @@
 package com.fileshare.app.service.impl;
 
-import cn.hutool.http.HttpUtil;
-import cn.hutool.json.JSONUtil;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fileshare.app.cache.UserProfileCache;
+import com.fileshare.app.controller.vo.LoginVo;
 import com.fileshare.app.entity.User;
 import com.fileshare.app.mapper.UserMapper;
 import com.fileshare.app.service.UserService;
+import com.fileshare.app.util.AvatarProcessor;
 import com.fileshare.app.util.JwtUtil;
 import com.fileshare.app.util.ResultUtil;
 import com.fileshare.app.util.ResultUtil.Result;
+import com.fileshare.app.util.WxApiClient;
 import com.fileshare.app.util.WxPhoneUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,13 +19,27 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 用户服务实现类
@@ -44,6 +59,24 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Autowired
     private WxPhoneUtil wxPhoneUtil;
 
+    @Autowired
+    private WxApiClient wxApiClient;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private AvatarProcessor avatarProcessor;
+
+    @Value("${user.avatar.max-upload-size:10MB}")
+    private DataSize avatarMaxUploadSize;
+
+    /**
+     * 保存到用户资料中的头像尺寸
+     */
+    @Value("${user.avatar.default-size:128}")
+    private int avatarDefaultSize;
+
     @Value("${wechat.appid}")
     private String appId;
 
@@ -59,6 +92,45 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     @Value("${minio.imageUrl}")
     private String minioPublicUrl;
 
+    /**
+     * 登录时并行调用微信接口的线程数
+     */
+    @Value("${wechat.login.threads:16}")
+    private int loginThreads;
+
+    @Value("${wechat.login.queue-capacity:200}")
+    private int loginQueueCapacity;
+
+    /**
+     * 等待手机号结果的最长时间，超时后不带手机号继续登录
+     */
+    @Value("${wechat.login.phone-timeout-ms:5000}")
+    private long phoneTimeoutMs;
+
+    private ThreadPoolExecutor wxLoginExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        wxLoginExecutor = new ThreadPoolExecutor(loginThreads, loginThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(loginQueueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "wx-login-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // 队列满时由请求线程自己执行，退化为串行调用
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        wxLoginExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (wxLoginExecutor != null) {
+            wxLoginExecutor.shutdownNow();
+        }
+    }
+
     /**
      * 微信用户登录
      *
@@ -69,9 +141,13 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
      * @return 登录结果
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public Result<String> wxLogin(String code, String nickName, String phoneCode, String avatarUrl) {
+    public Result<LoginVo> wxLogin(String code, String nickName, String phoneCode, String avatarUrl) {
         try {
+            // 获取手机号与获取OpenID互不依赖，在登录线程池中并行请求
+            CompletableFuture<String> phoneFuture = StringUtils.hasText(phoneCode)
+                    ? CompletableFuture.supplyAsync(() -> getPhoneNumber(phoneCode), wxLoginExecutor)
+                    : CompletableFuture.completedFuture(null);
+
             // 获取微信OpenID
             Map<String, Object> wxResult = getWxOpenId(code);
             if (wxResult == null) {
@@ -86,7 +162,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             }
 
             // 获取手机号
-            String phoneNumber = getPhoneNumber(phoneCode);
+            String phoneNumber = awaitPhoneNumber(phoneFuture);
 
             // 处理用户昵称和头像
             nickName = StringUtils.hasText(nickName) ? nickName : DEFAULT_NICKNAME;
@@ -94,18 +170,49 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
             // 查询或创建用户
             User user = findOrCreateUser(openId, nickName, avatarUrl, phoneNumber);
+            if (user == null) {
+                return ResultUtil.error(500, "登录失败: 用户信息保存失败");
+            }
+            if (!Objects.equals(USER_STATUS_NORMAL, user.getStatus())) {
+                logger.warn("已禁用的用户尝试登录: userId={}", user.getId());
+                return ResultUtil.error(403, "账号已被禁用");
+            }
 
             // 生成token
             String token = jwtUtil.generateToken(user.getId());
             logger.info("生成token成功: userId={}", user.getId());
 
-            return ResultUtil.success(token);
+            // 直接用登录得到的用户构建返回数据，不再解析token和查询用户
+            LoginVo loginVo = LoginVo.builder()
+                    .userId(user.getId())
+                    .nickname(StringUtils.hasText(user.getNickname()) ? user.getNickname() : DEFAULT_NICKNAME)
+                    .avatarUrl(StringUtils.hasText(user.getAvatarUrl()) ? user.getAvatarUrl() : DEFAULT_AVATAR_URL)
+                    .phoneNumber(user.getPhoneNumber())
+                    .token(token)
+                    .build();
+            return ResultUtil.success(loginVo);
         } catch (Exception e) {
             logger.error("登录异常", e);
             return ResultUtil.error(500, "登录失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 等待并行获取的手机号，失败或超时时返回null，不影响登录
+     */
+    private String awaitPhoneNumber(CompletableFuture<String> phoneFuture) {
+        try {
+            return phoneFuture.get(phoneTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("获取手机号超时，本次登录不更新手机号");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("获取手机号异常", e.getCause());
+        }
+        return null;
+    }
+
     /**
      * 根据用户ID获取用户信息
      *
@@ -117,9 +224,10 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
         try {
             logger.info("获取用户信息, userId: {}", userId);
 
-            User user = getById(userId);
+            // 缓存返回的是副本，可以直接清理后返回
+            User user = userProfileCache.get(userId);
 
-            if (user == null) {
+            if (user == null || !Objects.equals(USER_STATUS_NORMAL, user.getStatus())) {
                 logger.warn("用户不存在, userId: {}", userId);
                 return ResultUtil.error(404, "用户不存在");
             }
@@ -163,6 +271,7 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
             if (needUpdate) {
                 existingUser.setUpdateTime(LocalDateTime.now());
                 updateById(existingUser);
+                userProfileCache.invalidateAfterCommit(existingUser.getId());
                 logger.info("用户昵称更新成功: userId={}", existingUser.getId());
             } else {
                 logger.info("用户昵称无变化，不更新: userId={}", existingUser.getId());
@@ -184,18 +293,12 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
      */
     private Map<String, Object> getWxOpenId(String code) {
         try {
-            // 构建微信API URL
-            String wxUrl = "https://api.weixin.qq.com/sns/jscode2session" +
+            // 通过共享连接池请求微信API
+            Map<String, Object> result = wxApiClient.get("/sns/jscode2session" +
                     "?appid=" + appId +
                     "&secret=" + appSecret +
                     "&js_code=" + code +
-                    "&grant_type=authorization_code";
-
-            // 使用Hutool的HttpUtil发送GET请求
-            String responseBody = HttpUtil.get(wxUrl);
-
-            // 使用Hutool的JSONUtil解析JSON响应
-            Map<String, Object> result = JSONUtil.toBean(responseBody, Map.class);
+                    "&grant_type=authorization_code");
 
             // 检查微信返回结果
             if (result.containsKey("errcode") && !Objects.equals(0, result.get("errcode"))) {
@@ -230,75 +333,32 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
     /**
      * 查询或创建用户
+     * 一条 INSERT ... ON DUPLICATE KEY UPDATE 原子地创建或刷新用户，并发的首次登录不会触发唯一键冲突
      *
      * @param openId 微信OpenID
      * @param nickName 用户昵称
      * @param avatarUrl 用户头像URL
      * @param phoneNumber 手机号
-     * @return 用户信息
+     * @return 用户信息（包括已禁用的用户）
      */
     private User findOrCreateUser(String openId, String nickName, String avatarUrl, String phoneNumber) {
-        // 查询用户是否存在
-        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(User::getOpenId, openId);
-        User user = getOne(wrapper);
-
-        // 用户不存在，则注册
-        if (user == null) {
-            user = createUser(openId, nickName, avatarUrl, phoneNumber);
-        } else {
-            // 用户存在，检查是否需要更新信息
-            updateUserIfNeeded(user, phoneNumber);
-        }
-
-        return user;
-    }
-
-    /**
-     * 创建新用户
-     *
-     * @param openId 微信OpenID
-     * @param nickName 用户昵称
-     * @param avatarUrl 用户头像URL
-     * @param phoneNumber 手机号
-     * @return 新创建的用户
-     */
-    private User createUser(String openId, String nickName, String avatarUrl, String phoneNumber) {
-        logger.info("创建新用户: nickname={}", nickName);
         User user = new User();
         user.setOpenId(openId);
         user.setNickname(nickName);
         user.setAvatarUrl(avatarUrl);
         user.setPhoneNumber(phoneNumber);
-        user.setCreateTime(LocalDateTime.now());
-        user.setUpdateTime(LocalDateTime.now());
-        user.setStatus(USER_STATUS_NORMAL);
-        save(user);
-        logger.info("新用户创建成功: id={}", user.getId());
-        return user;
-    }
-
-    /**
-     * 更新用户信息（如有必要）
-     *
-     * @param user 现有用户
-     * @param phoneNumber 新手机号
-     */
-    private void updateUserIfNeeded(User user,  String phoneNumber) {
-        boolean needUpdate = false;
-
-
-        // 更新手机号 - 只有当用户提供了新的手机号且与现有的不同时才更新
-        if (StringUtils.hasText(phoneNumber) && !phoneNumber.equals(user.getPhoneNumber())) {
-            user.setPhoneNumber(phoneNumber);
-            needUpdate = true;
-        }
-
-        if (needUpdate) {
-            user.setUpdateTime(LocalDateTime.now());
-            updateById(user);
-            logger.info("用户信息已更新: id={}", user.getId());
+        int affected = baseMapper.upsertByOpenId(user);
+        // 已存在的用户以数据库中的昵称、头像和状态为准；驱动未回填已存在行的主键时按open_id查询
+        User saved = user.getId() != null
+                ? baseMapper.selectByIdIncludingDisabled(user.getId())
+                : baseMapper.selectByOpenIdIncludingDisabled(openId);
+        if (saved == null) {
+            return null;
         }
+        logger.info("用户信息已保存: id={}, affectedRows={}", saved.getId(), affected);
+        // 手机号可能已更新，同时清除之前缓存的不存在标记
+        userProfileCache.invalidateAfterCommit(saved.getId());
+        return saved;
     }
 
     /**
@@ -334,18 +394,22 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
 
     /**
      * 上传用户头像
+     * 原图在有界线程池中裁剪、缩放为多个尺寸的JPEG，按内容摘要存储，相同图片重复上传得到相同的对象
      *
      * @param userId 用户ID
      * @param file 头像文件
-     * @return 头像URL
+     * @return 边长 -> 头像URL
      * @throws IOException IO异常
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public Result<String> uploadAvatar(Long userId, MultipartFile file) throws IOException {
+    public Result<Map<String, String>> uploadAvatar(Long userId, MultipartFile file) throws IOException {
         try {
-            logger.info("上传用户头像: userId={}, fileName={}, contentType={}",
-                userId, file.getOriginalFilename(), file.getContentType());
+            logger.info("上传用户头像: userId={}, fileName={}, contentType={}, size={}",
+                userId, file.getOriginalFilename(), file.getContentType(), file.getSize());
+
+            if (file.getSize() > avatarMaxUploadSize.toBytes()) {
+                return ResultUtil.validateFailed("头像文件不能超过" + avatarMaxUploadSize.toMegabytes() + "MB");
+            }
 
             // 检查用户是否存在
             User user = getById(userId);
@@ -354,41 +418,55 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
                 return ResultUtil.error(404, "用户不存在");
             }
 
-            // 生成文件名
-            String fileExtension = getFileExtension(file.getOriginalFilename());
-            String fileName = "avatar/" + userId + "/" + UUID.randomUUID().toString() + fileExtension;
-
-            logger.info("准备上传到MinIO, bucket={}, fileName={}", minioConfig.getBucketName(), fileName);
+            // 裁剪缩放为固定尺寸
+            byte[] data = file.getBytes();
+            Map<Integer, byte[]> images;
+            try {
+                images = avatarProcessor.process(data);
+            } catch (IllegalArgumentException e) {
+                logger.warn("头像处理被拒绝: userId={}, {}", userId, e.getMessage());
+                return ResultUtil.validateFailed(e.getMessage());
+            }
 
+            // 按内容摘要生成确定的对象路径: avatar/{userId}/{hash}/{size}.jpg
+            String prefix = "avatar/" + userId + "/" + contentHash(data) + "/";
+            Map<String, String> avatarUrls = new LinkedHashMap<>();
             try {
-                // 上传到MinIO
-                minioClient.putObject(
-                    io.minio.PutObjectArgs.builder()
-                        .bucket(minioConfig.getBucketName())
-                        .object(fileName)
-                        .stream(file.getInputStream(), file.getSize(), -1)
-                        .contentType(file.getContentType())
-                        .build()
-                );
-
-                logger.info("文件上传到MinIO成功");
+                for (Map.Entry<Integer, byte[]> entry : images.entrySet()) {
+                    String objectName = prefix + entry.getKey() + ".jpg";
+                    byte[] image = entry.getValue();
+                    minioClient.putObject(
+                        io.minio.PutObjectArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .object(objectName)
+                            .stream(new ByteArrayInputStream(image), image.length, -1)
+                            .contentType("image/jpeg")
+                            // 路径随内容变化，内容不会被覆盖，可长期缓存
+                            .headers(Collections.singletonMap("Cache-Control", "public, max-age=31536000, immutable"))
+                            .build()
+                    );
+                    avatarUrls.put(String.valueOf(entry.getKey()),
+                            minioPublicUrl + "/" + minioConfig.getBucketName() + "/" + objectName);
+                }
+                logger.info("头像上传到MinIO成功: {}", prefix);
             } catch (Exception e) {
                 logger.error("MinIO上传异常", e);
                 return ResultUtil.error(500, "文件存储失败: " + e.getMessage());
             }
 
-            // 构建访问URL - 使用公共可访问的URL
-            String avatarUrl = minioPublicUrl + "/" + minioConfig.getBucketName() + "/" + fileName;
-            logger.info("生成的头像URL: {}", avatarUrl);
-
-            // 更新用户头像URL
+            // 用户资料中保存列表展示用的默认尺寸
+            String avatarUrl = avatarUrls.get(String.valueOf(avatarDefaultSize));
+            if (avatarUrl == null) {
+                avatarUrl = avatarUrls.values().iterator().next();
+            }
             user.setAvatarUrl(avatarUrl);
             user.setUpdateTime(LocalDateTime.now());
             updateById(user);
+            userProfileCache.invalidateAfterCommit(userId);
 
             logger.info("用户头像上传成功: userId={}, avatarUrl={}", userId, avatarUrl);
 
-            return ResultUtil.success(avatarUrl);
+            return ResultUtil.success(avatarUrls);
         } catch (Exception e) {
             logger.error("上传头像异常", e);
             return ResultUtil.error(500, "上传头像失败: " + e.getMessage());
@@ -396,15 +474,14 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements Us
     }
 
     /**
-     * 获取文件扩展名
-     *
-     * @param fileName 文件名
-     * @return 文件扩展名
+     * 原图内容摘要，取SHA-256前16个十六进制字符
      */
-    private String getFileExtension(String fileName) {
-        if (fileName == null || !fileName.contains(".")) {
-            return ".jpg"; // 默认扩展名
+    private static String contentHash(byte[] data) throws NoSuchAlgorithmException {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+        StringBuilder hex = new StringBuilder(16);
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", digest[i]));
         }
-        return fileName.substring(fileName.lastIndexOf("."));
+        return hex.toString();
     }
 }
@@ -1,75 +1,359 @@
 package com.fileshare.app.task;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.fileshare.app.config.MinioConfig;
 import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.service.FileContentService;
+import com.fileshare.app.service.TaskLeaseService;
 import com.fileshare.app.service.impl.FileServiceImpl;
-import io.minio.MinioClient;
-import io.minio.RemoveObjectArgs;
+import com.fileshare.app.service.impl.FileServiceImpl.RetireResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * 文件清理定时任务
+ * 按(expire_time, id)游标分批扫描过期文件，每批一次批量逻辑删除，再批量删除MinIO对象；
+ * 过期文件按 id % 分片数 划分分片，分片通过数据库租约分配给各节点；
+ * 某批回收失败时退避重试，仍失败则分片留待本轮下个周期重新扫描，删除失败的对象也在之后的周期重试
  */
 @Slf4j
 @Component
 public class FileCleanTask {
 
+    private static final String LEASE_PREFIX = "file-clean:";
+
+    /**
+     * 分片租约记录保留天数
+     */
+    private static final int LEASE_RETENTION_DAYS = 7;
+
     @Autowired
     private FileServiceImpl fileService;
 
     @Autowired
-    private MinioClient minioClient;
+    private FileContentService fileContentService;
 
     @Autowired
-    private MinioConfig minioConfig;
+    private TaskLeaseService taskLeaseService;
+
+    /**
+     * 每批处理的文件数，不超过MinIO单次批量删除上限1000
+     */
+    @Value("${file.clean.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * 分片数，多节点部署时可设为节点数的倍数，由各节点并行处理
+     */
+    @Value("${file.clean.shard-count:1}")
+    private int shardCount;
+
+    /**
+     * 分片租约时长（秒），每处理一批续期一次
+     */
+    @Value("${file.clean.lease-seconds:300}")
+    private long leaseSeconds;
+
+    /**
+     * 等待其他节点完成分片（或接管其分片）的最长时间
+     */
+    @Value("${file.clean.max-wait-minutes:30}")
+    private long maxWaitMinutes;
+
+    /**
+     * 每秒最多删除的MinIO对象数，0表示不限速
+     */
+    @Value("${file.clean.max-objects-per-second:200}")
+    private int maxObjectsPerSecond;
+
+    /**
+     * 单批回收失败后的重试次数，每次等待时间翻倍
+     */
+    @Value("${file.clean.batch-retries:3}")
+    private int batchRetries;
+
+    @Value("${file.clean.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    /**
+     * 本轮清理，所有分片完成或等待超时后清空
+     */
+    private final AtomicReference<CleanRun> currentRun = new AtomicReference<>();
+
+    /**
+     * 同一时间只有一个调度线程处理分片
+     */
+    private final AtomicBoolean processing = new AtomicBoolean();
 
     /**
      * 每天凌晨2点执行清理过期文件
+     * 到期回收由FileExpiryScheduler持续完成，这里只兜底处理遗漏的文件（如队列溢出、回收失败）；
+     * 多节点部署时各节点通过租约领取分片，持有分片的节点宕机后租约到期，由其他节点接管
      */
     @Scheduled(cron = "0 0 2 * * ?")
     public void cleanExpiredFiles() {
         log.info("开始清理过期文件...");
-        
+        taskLeaseService.deleteStale(LEASE_PREFIX, LEASE_RETENTION_DAYS);
+
+        // 打乱分片顺序，多个节点同时启动时各自从不同分片开始
+        List<Integer> pending = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            pending.add(shard);
+        }
+        Collections.shuffle(pending);
+
+        currentRun.set(new CleanRun(LEASE_PREFIX + LocalDate.now() + ":", LocalDateTime.now(),
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(maxWaitMinutes), pending));
+        processPendingShards();
+    }
+
+    /**
+     * 剩余分片由其他节点持有或本轮处理失败时，在之后的周期重试：其他节点完成后移除，租约到期后接管；
+     * 不在调度线程上等待，避免占住其他定时任务
+     */
+    @Scheduled(initialDelayString = "${file.clean.retry-interval-ms:150000}",
+            fixedDelayString = "${file.clean.retry-interval-ms:150000}")
+    public void retryPendingShards() {
+        if (currentRun.get() != null) {
+            processPendingShards();
+        }
+    }
+
+    /**
+     * 尝试处理本轮尚未完成的分片，每个分片只尝试一次
+     */
+    private void processPendingShards() {
+        CleanRun run = currentRun.get();
+        if (run == null || !processing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            retryFailedObjects(run);
+            Iterator<Integer> iterator = run.pending.iterator();
+            while (iterator.hasNext()) {
+                int shard = iterator.next();
+                String leaseKey = run.leasePrefix + shard;
+                if (taskLeaseService.isFinished(leaseKey)) {
+                    iterator.remove();
+                    continue;
+                }
+                if (!taskLeaseService.tryAcquire(leaseKey, leaseSeconds)) {
+                    continue;
+                }
+                if (cleanShard(shard, leaseKey, run)) {
+                    taskLeaseService.markFinished(leaseKey);
+                    iterator.remove();
+                }
+            }
+
+            if (run.pending.isEmpty() && run.failedObjects.isEmpty()) {
+                log.info("过期文件清理完成");
+                currentRun.compareAndSet(run, null);
+            } else if (System.currentTimeMillis() > run.waitUntil) {
+                log.info("过期文件清理结束，分片 {} 未由本节点完成，{} 个对象删除失败（由存储对账回收）",
+                        run.pending, run.failedObjects.size());
+                currentRun.compareAndSet(run, null);
+            }
+        } catch (Exception e) {
+            log.error("文件清理任务执行异常: {}", e.getMessage());
+        } finally {
+            processing.set(false);
+        }
+    }
+
+    /**
+     * 重试之前删除失败的MinIO对象，对应的文件记录已回收，不会再被扫描到
+     */
+    private void retryFailedObjects(CleanRun run) {
+        if (run.failedObjects.isEmpty()) {
+            return;
+        }
+        List<String> retrying = new ArrayList<>(run.failedObjects);
+        List<String> failed = fileContentService.removeStorageObjects(retrying);
+        run.failedObjects.clear();
+        run.failedObjects.addAll(failed);
+        log.info("重试删除MinIO对象: {} 个，仍失败 {} 个", retrying.size(), failed.size());
+    }
+
+    /**
+     * 清理一个分片，每批处理后续期租约
+     *
+     * @return 分片是否处理完毕（租约丢失、回收失败或异常时返回false）
+     */
+    private boolean cleanShard(int shard, String leaseKey, CleanRun run) {
+        long startTime = System.currentTimeMillis();
+        int pageSize = Math.min(batchSize, 1000);
+        long scanned = 0;
+        long retired = 0;
+        long objectsRemoved = 0;
+        long objectsFailed = 0;
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        boolean completed = false;
+
         try {
-            // 1. 查询所有过期但未删除的文件
-            LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
-            wrapper.lt(FileInfo::getExpireTime, LocalDateTime.now());
-            wrapper.eq(FileInfo::getStatus, 1);
-            
-            List<FileInfo> expiredFiles = fileService.list(wrapper);
-            
-            log.info("发现 {} 个过期文件", expiredFiles.size());
-            
-            // 2. 逐个删除文件
-            for (FileInfo fileInfo : expiredFiles) {
-                try {
-                    // 2.1 从MinIO中删除文件
-                    minioClient.removeObject(
-                            RemoveObjectArgs.builder()
-                                    .bucket(minioConfig.getBucketName())
-                                    .object(fileInfo.getStoragePath())
-                                    .build()
-                    );
-                    
-                    // 2.2 更新数据库状态（逻辑删除）
-                    fileService.removeById(fileInfo.getId());
-                    
-                    log.info("已清理文件：{}", fileInfo.getFileName());
-                } catch (Exception e) {
-                    log.error("清理文件 {} 失败: {}", fileInfo.getFileName(), e.getMessage());
+            while (true) {
+                // 1. 按游标取下一批过期文件ID
+                List<FileInfo> batch = nextBatch(shard, run.deadline, cursorTime, cursorId, pageSize);
+                if (batch.isEmpty()) {
+                    completed = true;
+                    break;
+                }
+                scanned += batch.size();
+
+                // 2. 单个事务内批量逻辑删除并释放内容引用，失败时退避重试；
+                // 仍失败则停止本分片，游标不越过本批，留待下个周期从头扫描（已回收的文件不会再被扫到）
+                List<Long> ids = new ArrayList<>(batch.size());
+                for (FileInfo fileInfo : batch) {
+                    ids.add(fileInfo.getId());
+                }
+                RetireResult result = retireWithRetry(ids);
+                if (result == null) {
+                    break;
+                }
+                FileInfo last = batch.get(batch.size() - 1);
+                cursorTime = last.getExpireTime();
+                cursorId = last.getId();
+                retired += result.getRetiredCount();
+
+                // 3. 事务提交后批量删除已无引用的MinIO对象
+                List<String> storagePaths = result.getStoragePaths();
+                if (!storagePaths.isEmpty()) {
+                    long batchStart = System.currentTimeMillis();
+                    List<String> failedPaths = fileContentService.removeStorageObjects(storagePaths);
+                    int failed = failedPaths.size();
+                    objectsRemoved += storagePaths.size() - failed;
+                    objectsFailed += failed;
+                    run.failedObjects.addAll(failedPaths);
+                    throttle(storagePaths.size(), System.currentTimeMillis() - batchStart);
+                }
+
+                log.info("过期文件清理进度: 分片 {}/{}，已扫描 {}，已回收 {}，已删除对象 {}，失败对象 {}，{} 个/秒",
+                        shard, shardCount, scanned, retired, objectsRemoved, objectsFailed,
+                        throughput(retired, startTime));
+                if (batch.size() < pageSize) {
+                    completed = true;
+                    break;
+                }
+
+                // 4. 续期租约，租约已被其他节点接管时停止
+                if (!taskLeaseService.tryAcquire(leaseKey, leaseSeconds)) {
+                    log.warn("分片 {} 的租约已丢失，停止处理", shard);
+                    break;
                 }
             }
-            
-            log.info("过期文件清理完成");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("文件清理任务执行异常: {}", e.getMessage());
         }
+
+        log.info("分片 {}/{} 清理{}: 回收 {} 个文件，删除对象 {} 个，失败 {} 个，耗时 {}ms，{} 个/秒",
+                shard, shardCount, completed ? "完成" : "中断", retired, objectsRemoved, objectsFailed,
+                System.currentTimeMillis() - startTime, throughput(retired, startTime));
+        return completed;
+    }
+
+    /**
+     * 回收一批文件，失败时按退避时间重试
+     *
+     * @return 回收结果，重试后仍失败返回null
+     */
+    private RetireResult retireWithRetry(List<Long> ids) throws InterruptedException {
+        long backoff = retryBackoffMs;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return fileService.retireFiles(ids);
+            } catch (Exception e) {
+                if (attempt >= batchRetries) {
+                    log.error("回收过期文件失败，{} 次重试后放弃本批 {} 个，留待下个周期: {}",
+                            batchRetries, ids.size(), e.getMessage());
+                    return null;
+                }
+                log.warn("回收过期文件失败，{}ms后重试本批 {} 个: {}", backoff, ids.size(), e.getMessage());
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+
+    /**
+     * 查询下一批过期文件，走idx_expire_time索引
+     */
+    private List<FileInfo> nextBatch(int shard, LocalDateTime deadline, LocalDateTime cursorTime, Long cursorId,
+                                     int pageSize) {
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(FileInfo::getId, FileInfo::getExpireTime);
+        wrapper.lt(FileInfo::getExpireTime, deadline);
+        wrapper.eq(FileInfo::getStatus, 1);
+        if (shardCount > 1) {
+            wrapper.apply("id % {0} = {1}", shardCount, shard);
+        }
+        if (cursorTime != null) {
+            wrapper.and(w -> w.gt(FileInfo::getExpireTime, cursorTime)
+                    .or(o -> o.eq(FileInfo::getExpireTime, cursorTime).gt(FileInfo::getId, cursorId)));
+        }
+        wrapper.orderByAsc(FileInfo::getExpireTime, FileInfo::getId);
+        wrapper.last("LIMIT " + pageSize);
+        return fileService.list(wrapper);
+    }
+
+    /**
+     * 按配置的速率限制删除MinIO对象
+     */
+    private void throttle(int objects, long elapsedMillis) throws InterruptedException {
+        if (maxObjectsPerSecond <= 0) {
+            return;
+        }
+        long expectedMillis = objects * 1000L / maxObjectsPerSecond;
+        if (expectedMillis > elapsedMillis) {
+            Thread.sleep(expectedMillis - elapsedMillis);
+        }
+    }
+
+    private static long throughput(long count, long startTime) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        return count * 1000 / elapsed;
+    }
+
+    /**
+     * 一轮清理的状态
+     */
+    private static class CleanRun {
+
+        private final String leasePrefix;
+
+        /**
+         * 本轮只清理在此之前过期的文件
+         */
+        private final LocalDateTime deadline;
+
+        private final long waitUntil;
+
+        private final List<Integer> pending;
+
+        /**
+         * 删除失败、待重试的MinIO对象，只在持有processing时访问
+         */
+        private final List<String> failedObjects = new ArrayList<>();
+
+        CleanRun(String leasePrefix, LocalDateTime deadline, long waitUntil, List<Integer> pending) {
+            this.leasePrefix = leasePrefix;
+            this.deadline = deadline;
+            this.waitUntil = waitUntil;
+            this.pending = pending;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,222 @@
+package com.fileshare.app.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.service.FileContentService;
+import com.fileshare.app.service.TaskLeaseService;
+import com.fileshare.app.service.impl.FileServiceImpl;
+import com.fileshare.app.service.impl.FileServiceImpl.RetireResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件到期调度器
+ * 定期按(expire_time, id)游标把前瞻窗口内即将过期的文件载入延迟队列，到期即回收，
+ * 清理工作随文件过期时间均匀分布在全天；重启后从数据库重新载入，凌晨的清理任务仅作兜底
+ */
+@Slf4j
+@Component
+public class FileExpiryScheduler {
+
+    /**
+     * 每次载入查询的行数
+     */
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private static final String LEASE_KEY = "file-expiry";
+
+    @Autowired
+    private FileServiceImpl fileService;
+
+    @Autowired
+    private FileContentService fileContentService;
+
+    @Autowired
+    private TaskLeaseService taskLeaseService;
+
+    @Value("${file.expiry.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 前瞻窗口，提前载入该时间内将要过期的文件
+     */
+    @Value("${file.expiry.lookahead-minutes:10}")
+    private long lookaheadMinutes;
+
+    /**
+     * 队列中最多保留的文件数，超出部分下次载入时再处理
+     */
+    @Value("${file.expiry.max-queued:100000}")
+    private int maxQueued;
+
+    /**
+     * 单次回收的最大文件数
+     */
+    @Value("${file.expiry.batch-size:100}")
+    private int batchSize;
+
+    /**
+     * 载入租约时长（秒），需大于载入间隔，持有者宕机后由其他节点接管
+     */
+    @Value("${file.expiry.lease-seconds:180}")
+    private long leaseSeconds;
+
+    private final DelayQueue<ExpiryEntry> queue = new DelayQueue<>();
+
+    /**
+     * 已载入位置的游标，只在载入线程中读写
+     */
+    private LocalDateTime cursorTime;
+
+    private Long cursorId;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("文件到期调度器未启用");
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runWorker, "file-expiry-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * 载入前瞻窗口内将要过期的文件，启动后首次执行时包含停机期间已过期的文件
+     */
+    @Scheduled(fixedDelayString = "${file.expiry.load-interval-ms:60000}")
+    public synchronized void loadWindow() {
+        if (!enabled) {
+            return;
+        }
+        // 多节点部署时只由持有租约的节点载入；接管时游标从头开始，重复回收会被retireFiles跳过
+        if (!taskLeaseService.tryAcquire(LEASE_KEY, leaseSeconds)) {
+            cursorTime = null;
+            cursorId = null;
+            return;
+        }
+        LocalDateTime until = LocalDateTime.now().plusMinutes(lookaheadMinutes);
+        int loaded = 0;
+        try {
+            while (queue.size() < maxQueued) {
+                LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+                wrapper.select(FileInfo::getId, FileInfo::getExpireTime);
+                wrapper.lt(FileInfo::getExpireTime, until);
+                wrapper.eq(FileInfo::getStatus, 1);
+                if (cursorTime != null) {
+                    LocalDateTime time = cursorTime;
+                    Long id = cursorId;
+                    wrapper.and(w -> w.gt(FileInfo::getExpireTime, time)
+                            .or(o -> o.eq(FileInfo::getExpireTime, time).gt(FileInfo::getId, id)));
+                }
+                wrapper.orderByAsc(FileInfo::getExpireTime, FileInfo::getId);
+                wrapper.last("LIMIT " + Math.min(LOAD_BATCH_SIZE, maxQueued - queue.size()));
+                List<FileInfo> batch = fileService.list(wrapper);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (FileInfo fileInfo : batch) {
+                    queue.offer(new ExpiryEntry(fileInfo.getId(), fileInfo.getExpireTime()));
+                }
+                FileInfo last = batch.get(batch.size() - 1);
+                cursorTime = last.getExpireTime();
+                cursorId = last.getId();
+                loaded += batch.size();
+            }
+        } catch (Exception e) {
+            log.error("载入即将过期的文件失败: {}", e.getMessage());
+        }
+        if (loaded > 0) {
+            log.info("载入即将过期的文件 {} 个，队列长度 {}", loaded, queue.size());
+        }
+    }
+
+    /**
+     * 回收线程：取出已到期的文件，合并成小批次回收
+     */
+    private void runWorker() {
+        while (running) {
+            try {
+                ExpiryEntry first = queue.take();
+                List<ExpiryEntry> entries = new ArrayList<>();
+                entries.add(first);
+                queue.drainTo(entries, batchSize - 1);
+
+                List<Long> ids = new ArrayList<>(entries.size());
+                for (ExpiryEntry entry : entries) {
+                    ids.add(entry.fileId);
+                }
+                retire(ids);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("到期回收异常: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 回收一批到期文件，已被用户删除的文件会被跳过
+     */
+    private void retire(List<Long> ids) {
+        RetireResult result = fileService.retireFiles(ids);
+        if (!result.getStoragePaths().isEmpty()) {
+            fileContentService.removeStorageObjects(result.getStoragePaths());
+        }
+        if (result.getRetiredCount() > 0) {
+            log.info("到期回收文件 {} 个，删除对象 {} 个", result.getRetiredCount(), result.getStoragePaths().size());
+        }
+    }
+
+    /**
+     * 延迟队列条目
+     */
+    private static class ExpiryEntry implements Delayed {
+
+        private final Long fileId;
+
+        private final long expireAtMillis;
+
+        ExpiryEntry(Long fileId, LocalDateTime expireTime) {
+            this.fileId = fileId;
+            this.expireAtMillis = expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expireAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expireAtMillis, ((ExpiryEntry) other).expireAtMillis);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.fileshare.app.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.fileshare.app.config.MinioConfig;
+import com.fileshare.app.entity.FileContent;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.entity.ReconcileCheckpoint;
+import com.fileshare.app.mapper.FileContentMapper;
+import com.fileshare.app.mapper.FileInfoMapper;
+import com.fileshare.app.mapper.ReconcileCheckpointMapper;
+import com.fileshare.app.service.FileContentService;
+import com.fileshare.app.service.TaskLeaseService;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 存储对账任务
+ * 按对象名顺序遍历MinIO对象，同时按storage_path顺序分页扫描file和file_content表，
+ * 归并比较找出没有任何记录引用的孤儿对象并删除；内存占用与对象总数无关，
+ * 进度定期写入检查点，中断后从上次位置继续
+ */
+@Slf4j
+@Component
+public class StorageReconcileTask {
+
+    private static final String TASK_NAME = "storage-reconcile";
+
+    private static final String LEASE_KEY = "storage-reconcile";
+
+    /**
+     * 数据库每次扫描的行数
+     */
+    private static final int SCAN_PAGE_SIZE = 1000;
+
+    /**
+     * 单次批量删除的对象数
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    /**
+     * 每处理多少个对象保存一次检查点
+     */
+    private static final int CHECKPOINT_INTERVAL = 5000;
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @Autowired
+    private MinioConfig minioConfig;
+
+    @Autowired
+    private FileInfoMapper fileInfoMapper;
+
+    @Autowired
+    private FileContentMapper fileContentMapper;
+
+    @Autowired
+    private ReconcileCheckpointMapper checkpointMapper;
+
+    @Autowired
+    private FileContentService fileContentService;
+
+    @Autowired
+    private TaskLeaseService taskLeaseService;
+
+    @Value("${file.reconcile.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 只统计不删除
+     */
+    @Value("${file.reconcile.dry-run:true}")
+    private boolean dryRun;
+
+    /**
+     * 最近该时间内创建的对象不参与对账，避免误删上传中、尚未写入记录的对象
+     */
+    @Value("${file.reconcile.grace-hours:24}")
+    private long graceHours;
+
+    /**
+     * 不参与对账的对象前缀（如用户头像），逗号分隔
+     */
+    @Value("${file.reconcile.excluded-prefixes:avatar/}")
+    private String excludedPrefixes;
+
+    /**
+     * 每秒最多删除的对象数，0表示不限速
+     */
+    @Value("${file.reconcile.max-deletes-per-second:100}")
+    private int maxDeletesPerSecond;
+
+    /**
+     * 对账租约时长（秒），每次保存检查点时续期
+     */
+    @Value("${file.reconcile.lease-seconds:600}")
+    private long leaseSeconds;
+
+    /**
+     * 每天凌晨4点执行对账
+     */
+    @Scheduled(cron = "${file.reconcile.cron:0 0 4 * * ?}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        // 多节点部署时只由持有租约的节点执行
+        if (!taskLeaseService.tryAcquire(LEASE_KEY, leaseSeconds)) {
+            log.info("存储对账由其他节点执行");
+            return;
+        }
+        try {
+            doReconcile();
+        } finally {
+            taskLeaseService.release(LEASE_KEY);
+        }
+    }
+
+    private void doReconcile() {
+        ReconcileCheckpoint checkpoint = loadCheckpoint();
+        String startAfter = checkpoint.getLastKey();
+        log.info("开始存储对账: dryRun={}, 起始位置={}", dryRun, startAfter == null ? "开头" : startAfter);
+
+        long startTime = System.currentTimeMillis();
+        ZonedDateTime graceLimit = ZonedDateTime.now().minusHours(graceHours);
+        String[] excluded = StringUtils.commaDelimitedListToStringArray(excludedPrefixes);
+        PathCursor fileCursor = new PathCursor(startAfter, this::nextFilePaths);
+        PathCursor contentCursor = new PathCursor(startAfter, this::nextContentPaths);
+        List<String> orphans = new ArrayList<>();
+        long scanned = 0;
+        long orphanCount = 0;
+        long orphanBytes = 0;
+        long deleted = 0;
+        String lastKey = startAfter;
+
+        try {
+            ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .recursive(true);
+            if (startAfter != null) {
+                args.startAfter(startAfter);
+            }
+            for (Result<Item> result : minioClient.listObjects(args.build())) {
+                Item item = result.get();
+                String objectName = item.objectName();
+                lastKey = objectName;
+                scanned++;
+
+                // 1. 跳过目录、排除前缀和宽限期内的对象
+                if (!item.isDir() && !isExcluded(objectName, excluded)
+                        && (item.lastModified() == null || item.lastModified().isBefore(graceLimit))
+                        // 2. 两个有序游标都推进到当前对象，均未命中即为孤儿
+                        && !fileCursor.contains(objectName) && !contentCursor.contains(objectName)) {
+                    orphanCount++;
+                    orphanBytes += item.size();
+                    if (dryRun) {
+                        log.info("发现孤儿对象（dry-run，不删除）: {}, size={}", objectName, item.size());
+                    } else {
+                        orphans.add(objectName);
+                    }
+                }
+
+                // 3. 攒够一批删除，并保存检查点
+                if (orphans.size() >= DELETE_BATCH_SIZE) {
+                    deleted += deleteOrphans(orphans);
+                    orphans.clear();
+                }
+                if (scanned % CHECKPOINT_INTERVAL == 0) {
+                    deleted += deleteOrphans(orphans);
+                    orphans.clear();
+                    saveCheckpoint(checkpoint, lastKey);
+                    if (!taskLeaseService.tryAcquire(LEASE_KEY, leaseSeconds)) {
+                        log.warn("存储对账租约已丢失，停止执行，下次从 {} 继续", lastKey);
+                        return;
+                    }
+                    log.info("存储对账进度: 已扫描 {}，孤儿对象 {}（{} 字节），已删除 {}，当前位置 {}",
+                            scanned, orphanCount, orphanBytes, deleted, lastKey);
+                }
+            }
+            deleted += deleteOrphans(orphans);
+            // 完整结束，下次从头开始
+            saveCheckpoint(checkpoint, null);
+        } catch (Exception e) {
+            log.error("存储对账中断，下次从 {} 继续: {}", lastKey, e.getMessage());
+            saveCheckpoint(checkpoint, lastKey);
+            return;
+        }
+
+        log.info("存储对账完成: 扫描 {} 个对象，孤儿对象 {} 个（{} 字节），删除 {} 个，耗时 {}ms",
+                scanned, orphanCount, orphanBytes, deleted, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 删除孤儿对象并限速
+     *
+     * @return 删除成功的数量
+     */
+    private long deleteOrphans(List<String> orphans) throws InterruptedException {
+        if (orphans.isEmpty()) {
+            return 0;
+        }
+        long batchStart = System.currentTimeMillis();
+        int failed = fileContentService.removeStorageObjects(new ArrayList<>(orphans)).size();
+        if (maxDeletesPerSecond > 0) {
+            long expectedMillis = orphans.size() * 1000L / maxDeletesPerSecond;
+            long elapsed = System.currentTimeMillis() - batchStart;
+            if (expectedMillis > elapsed) {
+                Thread.sleep(expectedMillis - elapsed);
+            }
+        }
+        return orphans.size() - failed;
+    }
+
+    private static boolean isExcluded(String objectName, String[] excluded) {
+        for (String prefix : excluded) {
+            String trimmed = prefix.trim();
+            if (!trimmed.isEmpty() && objectName.startsWith(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 有效文件引用的存储路径，按storage_path升序（列使用utf8mb4_bin，与对象名的字节序一致）
+     */
+    private List<String> nextFilePaths(String after) {
+        LambdaQueryWrapper<FileInfo> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(FileInfo::getStoragePath);
+        wrapper.eq(FileInfo::getStatus, 1);
+        if (after != null) {
+            wrapper.gt(FileInfo::getStoragePath, after);
+        }
+        wrapper.orderByAsc(FileInfo::getStoragePath);
+        wrapper.last("LIMIT " + SCAN_PAGE_SIZE);
+        List<String> paths = new ArrayList<>();
+        for (FileInfo fileInfo : fileInfoMapper.selectList(wrapper)) {
+            paths.add(fileInfo.getStoragePath());
+        }
+        return paths;
+    }
+
+    /**
+     * 仍被引用的去重内容的存储路径，按storage_path升序
+     */
+    private List<String> nextContentPaths(String after) {
+        LambdaQueryWrapper<FileContent> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(FileContent::getStoragePath);
+        if (after != null) {
+            wrapper.gt(FileContent::getStoragePath, after);
+        }
+        wrapper.orderByAsc(FileContent::getStoragePath);
+        wrapper.last("LIMIT " + SCAN_PAGE_SIZE);
+        List<String> paths = new ArrayList<>();
+        for (FileContent content : fileContentMapper.selectList(wrapper)) {
+            paths.add(content.getStoragePath());
+        }
+        return paths;
+    }
+
+    private ReconcileCheckpoint loadCheckpoint() {
+        LambdaQueryWrapper<ReconcileCheckpoint> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(ReconcileCheckpoint::getTaskName, TASK_NAME);
+        ReconcileCheckpoint checkpoint = checkpointMapper.selectOne(wrapper);
+        if (checkpoint == null) {
+            checkpoint = new ReconcileCheckpoint();
+            checkpoint.setTaskName(TASK_NAME);
+            checkpoint.setStartTime(LocalDateTime.now());
+            checkpoint.setUpdateTime(LocalDateTime.now());
+            checkpointMapper.insert(checkpoint);
+        } else if (checkpoint.getLastKey() == null) {
+            checkpoint.setStartTime(LocalDateTime.now());
+        }
+        return checkpoint;
+    }
+
+    /**
+     * 保存检查点，lastKey为空表示本轮已完成（需显式写入NULL）
+     */
+    private void saveCheckpoint(ReconcileCheckpoint checkpoint, String lastKey) {
+        try {
+            checkpointMapper.update(null, new LambdaUpdateWrapper<ReconcileCheckpoint>()
+                    .set(ReconcileCheckpoint::getLastKey, lastKey)
+                    .set(ReconcileCheckpoint::getStartTime, checkpoint.getStartTime())
+                    .set(ReconcileCheckpoint::getUpdateTime, LocalDateTime.now())
+                    .eq(ReconcileCheckpoint::getId, checkpoint.getId()));
+        } catch (Exception e) {
+            log.warn("保存对账检查点失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按UTF-8字节序比较两个对象名，与MinIO列举顺序和utf8mb4_bin排序一致
+     * UTF-8字节序等同于码点顺序，逐码点比较即可，不必编码；
+     * String.compareTo按UTF-16代码单元比较，增补平面字符（如emoji）会排在U+E000~U+FFFF之前
+     */
+    static int compareUtf8(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * 按升序分页读取存储路径的游标，只能向前推进
+     */
+    static class PathCursor {
+
+        private final Function<String, List<String>> pager;
+
+        private String lastLoaded;
+
+        private List<String> page;
+
+        private int index;
+
+        private boolean exhausted;
+
+        PathCursor(String startAfter, Function<String, List<String>> pager) {
+            this.lastLoaded = startAfter;
+            this.pager = pager;
+        }
+
+        /**
+         * 推进到不小于key的位置，判断key是否存在
+         */
+        boolean contains(String key) {
+            String current;
+            while ((current = peek()) != null && compareUtf8(current, key) < 0) {
+                index++;
+            }
+            return key.equals(current);
+        }
+
+        private String peek() {
+            while (page == null || index >= page.size()) {
+                if (exhausted) {
+                    return null;
+                }
+                page = pager.apply(lastLoaded);
+                index = 0;
+                if (page.size() < SCAN_PAGE_SIZE) {
+                    exhausted = true;
+                }
+                if (!page.isEmpty()) {
+                    lastLoaded = page.get(page.size() - 1);
+                }
+            }
+            return page.get(index);
+        }
+    }
+}
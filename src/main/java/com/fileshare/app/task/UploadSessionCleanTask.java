@@ -0,0 +1,48 @@
+package com.fileshare.app.task;
+
+import com.fileshare.app.service.MultipartUploadService;
+import com.fileshare.app.service.TaskLeaseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分片上传会话清理定时任务
+ */
+@Slf4j
+@Component
+public class UploadSessionCleanTask {
+
+    private static final String LEASE_KEY = "upload-session-clean";
+
+    /**
+     * 租约时长（秒）。执行完不主动释放，时钟略有偏差的其他节点在此期间不会重复执行
+     */
+    private static final long LEASE_SECONDS = 600;
+
+    @Autowired
+    private MultipartUploadService multipartUploadService;
+
+    @Autowired
+    private TaskLeaseService taskLeaseService;
+
+    /**
+     * 每小时清理一次超时未完成的分片上传
+     */
+    @Scheduled(cron = "0 30 * * * ?")
+    public void cleanExpiredSessions() {
+        if (!taskLeaseService.tryAcquire(LEASE_KEY, LEASE_SECONDS)) {
+            log.debug("分片上传会话清理任务由其他节点执行");
+            return;
+        }
+        try {
+            int cleaned = multipartUploadService.cleanExpiredSessions();
+            if (cleaned > 0) {
+                log.info("已清理 {} 个超时的分片上传会话", cleaned);
+            }
+        } catch (Exception e) {
+            log.error("分片上传会话清理任务执行异常: {}", e.getMessage());
+        }
+    }
+}
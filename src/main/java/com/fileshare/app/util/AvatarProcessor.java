@@ -0,0 +1,237 @@
+package com.fileshare.app.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 头像处理工具类
+ * 把上传的图片居中裁成正方形，缩放为固定的几种尺寸并重新编码为JPEG；
+ * 解码前先读取图片头部的宽高，超过像素上限直接拒绝，大图按目标尺寸降采样解码，
+ * 只解码裁剪区域，避免手机原图在内存中完整展开；处理在有界线程池中进行
+ */
+@Component
+public class AvatarProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarProcessor.class);
+
+    /**
+     * 输出的头像边长（像素），从小到大
+     */
+    @Value("${user.avatar.sizes:64,128,256}")
+    private int[] sizes;
+
+    /**
+     * 允许的原图最大像素数，按宽高在解码前检查
+     */
+    @Value("${user.avatar.max-source-pixels:40000000}")
+    private long maxSourcePixels;
+
+    @Value("${user.avatar.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${user.avatar.threads:2}")
+    private int threads;
+
+    @Value("${user.avatar.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${user.avatar.process-timeout-ms:10000}")
+    private long processTimeoutMs;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        sizes = Arrays.copyOf(sizes, sizes.length);
+        Arrays.sort(sizes);
+        // 不使用磁盘缓存，图片流都在内存中
+        ImageIO.setUseCache(false);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "avatar-processor-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        logger.info("头像处理已初始化: sizes={}, maxSourcePixels={}, threads={}", Arrays.toString(sizes), maxSourcePixels, threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 输出的头像边长
+     */
+    public int[] getSizes() {
+        return Arrays.copyOf(sizes, sizes.length);
+    }
+
+    /**
+     * 处理头像
+     *
+     * @param data 原图数据
+     * @return 边长 -> JPEG数据，按边长从小到大
+     * @throws IllegalArgumentException 图片格式不支持、尺寸超限或处理繁忙
+     * @throws IOException 图片解码或编码失败
+     */
+    public Map<Integer, byte[]> process(byte[] data) throws IOException {
+        Future<Map<Integer, byte[]>> future;
+        try {
+            future = executor.submit(() -> doProcess(data));
+        } catch (RejectedExecutionException e) {
+            throw new IllegalArgumentException("头像处理繁忙，请稍后重试");
+        }
+        try {
+            return future.get(processTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("头像处理超时");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("头像处理被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("头像处理失败", cause);
+        }
+    }
+
+    private Map<Integer, byte[]> doProcess(byte[] data) throws IOException {
+        Map<Integer, byte[]> result = new TreeMap<>();
+        // 从大到小依次缩放，每个尺寸以上一个结果为源
+        BufferedImage current = decodeSquare(data);
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            current = resize(current, sizes[i]);
+            result.put(sizes[i], encodeJpeg(current));
+        }
+        return result;
+    }
+
+    /**
+     * 解码居中的正方形区域，按最大输出尺寸的两倍降采样
+     */
+    private BufferedImage decodeSquare(byte[] data) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (width <= 0 || height <= 0 || (long) width * height > maxSourcePixels) {
+                    throw new IllegalArgumentException("图片尺寸过大: " + width + "x" + height);
+                }
+
+                int side = Math.min(width, height);
+                int subsampling = Math.max(1, side / (sizes[sizes.length - 1] * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                logger.debug("头像解码: {}x{}, 降采样 {}, 解码后 {}x{}",
+                        width, height, subsampling, decoded.getWidth(), decoded.getHeight());
+                return decoded;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 缩放到指定边长，缩小超过一半时逐级减半，避免一次缩放丢失细节
+     */
+    private static BufferedImage resize(BufferedImage source, int size) {
+        BufferedImage current = source;
+        int currentSize = Math.min(current.getWidth(), current.getHeight());
+        while (currentSize / 2 >= size) {
+            currentSize /= 2;
+            current = draw(current, currentSize);
+        }
+        return draw(current, size);
+    }
+
+    /**
+     * 绘制到白底的RGB图像上，透明区域变为白色
+     */
+    private static BufferedImage draw(BufferedImage source, int size) {
+        BufferedImage target = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, size, size);
+            graphics.drawImage(source, 0, 0, size, size, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("没有可用的JPEG编码器");
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,143 @@
+package com.fileshare.app.util;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.net.InetAddresses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 客户端IP解析工具类
+ * 只有直连地址属于可信代理时才采信X-Forwarded-For，从右往左取第一个非可信代理的地址，防止客户端伪造；
+ * 所有地址按IP字面量严格解析，不做DNS解析
+ */
+@Component
+public class ClientIpResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientIpResolver.class);
+
+    /**
+     * IP字面量允许出现的字符
+     */
+    private static final CharMatcher LITERAL_CHARS = CharMatcher.anyOf("0123456789abcdefABCDEF.:");
+
+    /**
+     * 可信代理列表，支持单个IP或CIDR网段，逗号分隔
+     */
+    @Value("${web.trusted-proxies:127.0.0.1,::1}")
+    private String trustedProxies;
+
+    private final List<byte[]> trustedNetworks = new ArrayList<>();
+
+    private final List<Integer> trustedPrefixes = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (String proxy : StringUtils.commaDelimitedListToStringArray(trustedProxies)) {
+            String value = proxy.trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            int slash = value.indexOf('/');
+            String address = slash >= 0 ? value.substring(0, slash) : value;
+            byte[] bytes = toBytes(address);
+            if (bytes == null) {
+                logger.warn("忽略无效的可信代理配置: {}", value);
+                continue;
+            }
+            trustedNetworks.add(bytes);
+            trustedPrefixes.add(slash >= 0 ? Integer.parseInt(value.substring(slash + 1)) : bytes.length * 8);
+        }
+    }
+
+    /**
+     * 解析请求的真实客户端IP
+     * 转发头中的地址必须是合法的IPv4/IPv6字面量，遇到无法解析的内容时退回直连地址，
+     * 避免任意文本进入下载历史
+     *
+     * @param request HTTP请求
+     * @return 客户端IP
+     */
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrusted(remoteAddr)) {
+            return remoteAddr;
+        }
+
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (StringUtils.hasText(forwardedFor)) {
+            String[] hops = forwardedFor.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (toBytes(hop) == null) {
+                    logger.debug("X-Forwarded-For中包含非IP内容，使用直连地址: {}", remoteAddr);
+                    return remoteAddr;
+                }
+                if (!isTrusted(hop)) {
+                    return hop;
+                }
+            }
+            return hops[0].trim();
+        }
+
+        String realIp = request.getHeader("X-Real-IP");
+        if (StringUtils.hasText(realIp) && toBytes(realIp.trim()) != null) {
+            return realIp.trim();
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * 判断地址是否属于可信代理
+     */
+    private boolean isTrusted(String address) {
+        byte[] bytes = toBytes(address);
+        if (bytes == null) {
+            return false;
+        }
+        for (int i = 0; i < trustedNetworks.size(); i++) {
+            if (matches(trustedNetworks.get(i), trustedPrefixes.get(i), bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(byte[] network, int prefix, byte[] address) {
+        if (network.length != address.length) {
+            return false;
+        }
+        int fullBytes = prefix / 8;
+        for (int i = 0; i < fullBytes; i++) {
+            if (network[i] != address[i]) {
+                return false;
+            }
+        }
+        int remainingBits = prefix % 8;
+        if (remainingBits == 0) {
+            return true;
+        }
+        int mask = (0xFF << (8 - remainingBits)) & 0xFF;
+        return (network[fullBytes] & mask) == (address[fullBytes] & mask);
+    }
+
+    /**
+     * 把IP字面量转换为字节，只接受ASCII的IPv4/IPv6字面量，不会触发DNS解析
+     * InetAddresses本身接受全角数字和带scope的IPv6地址，这里先按字符集过滤掉
+     *
+     * @return 地址字节（IPv4映射的IPv6地址返回4字节），不是合法字面量时返回null
+     */
+    static byte[] toBytes(String address) {
+        if (address == null || !LITERAL_CHARS.matchesAllOf(address) || !InetAddresses.isInetAddress(address)) {
+            return null;
+        }
+        return InetAddresses.forString(address).getAddress();
+    }
+}
@@ -1,18 +1,79 @@
 package com.fileshare.app.util;
 
+import com.fileshare.app.mapper.FileInfoMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 提取码生成工具类
+ * 后台线程批量生成候选码，一次IN查询剔除已占用的码后放入无锁队列，请求线程直接出队；
+ * 池为空时退化为本地随机生成。最终唯一性由uk_extract_code保证，冲突时由调用方重新取码
  */
 @Component
 public class ExtractCodeUtil {
 
+    private static final Logger log = LoggerFactory.getLogger(ExtractCodeUtil.class);
+
     private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
     private static final int CODE_LENGTH = 6;
-    private static final Random RANDOM = new Random();
+
+    /**
+     * 单次IN查询的候选码数量
+     */
+    private static final int CHECK_BATCH_SIZE = 500;
+
+    @Autowired
+    private FileInfoMapper fileInfoMapper;
+
+    @Value("${file.extract-code.pool-size:2000}")
+    private int poolSize;
+
+    /**
+     * 池中剩余数量低于该值时触发后台补充
+     */
+    @Value("${file.extract-code.refill-threshold:500}")
+    private int refillThreshold;
+
+    private final ConcurrentLinkedQueue<String> pool = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger available = new AtomicInteger();
+
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    private ExecutorService refillExecutor;
+
+    @PostConstruct
+    public void init() {
+        refillExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "extract-code-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        triggerRefill();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
 
     /**
      * 生成随机提取码
@@ -20,11 +81,62 @@ public class ExtractCodeUtil {
      * @return 6位随机提取码
      */
     public String generateExtractCode() {
+        String code = pool.poll();
+        int remaining = code != null ? available.decrementAndGet() : 0;
+        if (remaining < refillThreshold) {
+            triggerRefill();
+        }
+        return code != null ? code : randomCode(ThreadLocalRandom.current());
+    }
+
+    private void triggerRefill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refillExecutor.execute(() -> {
+                try {
+                    refill();
+                } catch (Exception e) {
+                    log.warn("补充提取码池失败: {}", e.getMessage());
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            refilling.set(false);
+        }
+    }
+
+    /**
+     * 补充提取码池至目标容量
+     */
+    private void refill() {
+        Random random = new SecureRandom();
+        int added = 0;
+        while (available.get() < poolSize) {
+            Set<String> candidates = new HashSet<>(CHECK_BATCH_SIZE * 2);
+            while (candidates.size() < CHECK_BATCH_SIZE) {
+                candidates.add(randomCode(random));
+            }
+            // 不经过逻辑删除过滤：唯一索引包含已删除的记录，这些码同样不可用
+            List<String> used = fileInfoMapper.selectExistingExtractCodes(new ArrayList<>(candidates));
+            candidates.removeAll(used);
+            for (String code : candidates) {
+                pool.offer(code);
+            }
+            available.addAndGet(candidates.size());
+            added += candidates.size();
+        }
+        log.debug("提取码池已补充: added={}, available={}", added, available.get());
+    }
+
+    private static String randomCode(Random random) {
         StringBuilder sb = new StringBuilder(CODE_LENGTH);
         for (int i = 0; i < CODE_LENGTH; i++) {
-            int index = RANDOM.nextInt(CHARACTERS.length());
+            int index = random.nextInt(CHARACTERS.length());
             sb.append(CHARACTERS.charAt(index));
         }
         return sb.toString();
     }
-} 
\ No newline at end of file
+}
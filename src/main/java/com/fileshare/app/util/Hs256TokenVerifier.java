@@ -0,0 +1,138 @@
+package com.fileshare.app.util;
+
+import com.fileshare.app.util.JwtUtil.TokenClaims;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * 本系统签发token的专用HS256验证器
+ * 密钥预先构造，Mac按线程复用，直接从载荷中取出sub和exp，不构建通用的Claims映射；
+ * 只处理JwtUtil签发的固定格式（头部为{"alg":"HS256"}），其他格式返回UNSUPPORTED由JJWT处理
+ */
+public class Hs256TokenVerifier {
+
+    /**
+     * 格式不在快速路径支持范围内，需要交给JJWT解析
+     */
+    public static final TokenClaims UNSUPPORTED = new TokenClaims(null, 0);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * JJWT对{"alg":"HS256"}头部的Base64URL编码
+     */
+    private static final String EXPECTED_HEADER = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8));
+
+    private static final byte[] SUB_FIELD = "\"sub\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] EXP_FIELD = "\"exp\":".getBytes(StandardCharsets.US_ASCII);
+
+    private final SecretKeySpec key;
+
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * @param keyBytes 签名密钥，须与JJWT签名时使用的密钥字节一致
+     */
+    public Hs256TokenVerifier(byte[] keyBytes) {
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * 验证token签名并提取声明，不检查过期
+     *
+     * @param token JWT令牌
+     * @return 声明信息；签名无效或结构错误返回null；格式不支持返回UNSUPPORTED
+     */
+    public TokenClaims verify(String token) {
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+        if (firstDot != EXPECTED_HEADER.length() || !token.startsWith(EXPECTED_HEADER)) {
+            return UNSUPPORTED;
+        }
+
+        byte[] signature;
+        byte[] payload;
+        try {
+            signature = Base64.getUrlDecoder().decode(token.substring(secondDot + 1));
+            payload = Base64.getUrlDecoder().decode(token.substring(firstDot + 1, secondDot));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        Mac mac = macs.get();
+        for (int i = 0; i < secondDot; i++) {
+            // 签名输入只含Base64URL字符和'.'，逐字符写入即为ASCII编码，避免额外复制
+            mac.update((byte) token.charAt(i));
+        }
+        byte[] expected = mac.doFinal();
+        if (!MessageDigest.isEqual(expected, signature)) {
+            return null;
+        }
+
+        long subject = readNumber(payload, SUB_FIELD);
+        long exp = readNumber(payload, EXP_FIELD);
+        if (subject < 0 || exp < 0) {
+            return UNSUPPORTED;
+        }
+        return new TokenClaims(subject, exp * 1000);
+    }
+
+    /**
+     * 读取字段名之后的非负整数（sub的值是带引号的数字，exp是数字）
+     *
+     * @return 字段值，字段不存在或不是数字时返回-1
+     */
+    private static long readNumber(byte[] json, byte[] field) {
+        int start = indexOf(json, field);
+        if (start < 0) {
+            return -1;
+        }
+        long value = 0;
+        int digits = 0;
+        for (int i = start + field.length; i < json.length; i++) {
+            byte b = json[i];
+            if (b < '0' || b > '9') {
+                break;
+            }
+            if (++digits > 18) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return digits == 0 ? -1 : value;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化HmacSHA256失败", e);
+        }
+    }
+}
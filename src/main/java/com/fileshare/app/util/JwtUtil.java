@@ -3,11 +3,13 @@ package com.fileshare.app.util;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,6 +30,22 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    /**
+     * 是否使用专用HS256验证器验证本系统签发的token，关闭时全部走JJWT
+     */
+    @Value("${jwt.fast-verify:true}")
+    private boolean fastVerify;
+
+    private Hs256TokenVerifier fastVerifier;
+
+    @PostConstruct
+    public void init() {
+        if (fastVerify) {
+            // 与JJWT的setSigningKey(String)一致，密钥字符串按Base64解码得到签名密钥
+            fastVerifier = new Hs256TokenVerifier(TextCodec.BASE64.decode(secret));
+        }
+    }
+
     /**
      * 从token中解析用户ID
      *
@@ -35,15 +53,54 @@ public class JwtUtil {
      * @return 用户ID
      */
     public Long getUserIdFromToken(String token) {
+        TokenClaims claims = parseToken(token);
+        return claims != null ? claims.getUserId() : null;
+    }
+
+    /**
+     * 一次解析并验证token，同时得到有效性和声明信息
+     *
+     * @param token JWT令牌
+     * @return 声明信息，token为空、签名无效、已过期或subject不是用户ID时返回null
+     */
+    public TokenClaims parseToken(String token) {
+        if (token == null || token.trim().isEmpty()) {
+            logger.warn("token为空");
+            return null;
+        }
+        if (fastVerifier != null) {
+            TokenClaims claims = fastVerifier.verify(token);
+            if (claims == null) {
+                logger.warn("验证token失败: 签名无效或格式错误");
+                return null;
+            }
+            if (claims != Hs256TokenVerifier.UNSUPPORTED) {
+                if (claims.getExpiration() <= System.currentTimeMillis()) {
+                    logger.info("token已过期");
+                    return null;
+                }
+                return claims;
+            }
+        }
         try {
-            String subject = getClaimFromToken(token, Claims::getSubject);
-            logger.debug("从token获取subject: {}", subject);
-            return Long.parseLong(subject);
+            Claims claims = getAllClaimsFromToken(token);
+            Date expirationDate = claims.getExpiration();
+            if (expirationDate == null || expirationDate.before(new Date())) {
+                logger.info("token已过期");
+                return null;
+            }
+            return new TokenClaims(Long.parseLong(claims.getSubject()), expirationDate.getTime());
+        } catch (io.jsonwebtoken.ExpiredJwtException e) {
+            logger.info("token已过期");
+            return null;
+        } catch (io.jsonwebtoken.SignatureException e) {
+            logger.warn("验证token失败: 签名无效");
+            return null;
         } catch (NumberFormatException e) {
-            logger.error("从token获取用户ID失败: subject不是有效的用户ID", e);
+            logger.warn("验证token失败: subject不是有效的用户ID");
             return null;
         } catch (Exception e) {
-            logger.error("从token获取用户ID失败: {}", e.getMessage(), e);
+            logger.warn("验证token失败: {}", e.getMessage());
             return null;
         }
     }
@@ -80,22 +137,6 @@ public class JwtUtil {
         return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
     }
 
-    /**
-     * 检查token是否已过期
-     *
-     * @param token JWT令牌
-     * @return 是否已过期
-     */
-    private Boolean isTokenExpired(String token) {
-        try {
-            final Date expiration = getExpirationDateFromToken(token);
-            return expiration.before(new Date());
-        } catch (Exception e) {
-            logger.error("检查token过期失败", e);
-            return true;
-        }
-    }
-
     /**
      * 生成token
      *
@@ -139,30 +180,32 @@ public class JwtUtil {
      * @return 是否有效
      */
     public boolean validateToken(String token) {
-        try {
-            if (token == null || token.trim().isEmpty()) {
-                logger.warn("token为空");
-                return false;
-            }
-            
-            // 验证token是否过期
-            boolean isExpired = isTokenExpired(token);
-            if (isExpired) {
-                logger.info("token已过期");
-                return false;
-            }
-            
-            logger.debug("token验证通过");
-            return true;
-        } catch (io.jsonwebtoken.SignatureException e) {
-            logger.error("验证token异常: 签名无效", e);
-            return false;
-        } catch (io.jsonwebtoken.ExpiredJwtException e) {
-            logger.info("token已过期");
-            return false;
-        } catch (Exception e) {
-            logger.error("验证token异常: {}", e.getMessage(), e);
-            return false;
+        return parseToken(token) != null;
+    }
+
+    /**
+     * 已验证token的声明信息
+     */
+    public static class TokenClaims {
+
+        private final Long userId;
+
+        /**
+         * 过期时间（毫秒时间戳）
+         */
+        private final long expiration;
+
+        public TokenClaims(Long userId, long expiration) {
+            this.userId = userId;
+            this.expiration = expiration;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public long getExpiration() {
+            return expiration;
         }
     }
-} 
\ No newline at end of file
+}
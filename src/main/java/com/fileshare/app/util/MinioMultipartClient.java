@@ -0,0 +1,182 @@
+package com.fileshare.app.util;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.ListPartsResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.http.Method;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * MinIO分片上传客户端
+ * MinioClient没有公开分片上传的底层接口，这里继承MinioAsyncClient暴露
+ * 创建/上传分片/列出分片/合并/取消 五个操作，供断点续传使用
+ */
+public class MinioMultipartClient extends MinioAsyncClient {
+
+    /**
+     * 单次列出分片的最大数量（S3协议上限）
+     */
+    private static final int LIST_PARTS_PAGE_SIZE = 1000;
+
+    /**
+     * 分片上传预签名URL的有效期（秒），只在本次请求内使用
+     */
+    private static final int PART_URL_EXPIRY_SECONDS = 600;
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    private static final int READ_TIMEOUT_MS = 60000;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    public MinioMultipartClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    /**
+     * 创建分片上传任务
+     *
+     * @param bucketName 存储桶
+     * @param objectName 对象名称
+     * @param contentType 文件类型
+     * @return MinIO uploadId
+     */
+    public String createMultipartUpload(String bucketName, String objectName, String contentType) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null && !contentType.isEmpty()) {
+            headers.put("Content-Type", contentType);
+        }
+        return await(createMultipartUploadAsync(bucketName, null, objectName, headers, null))
+                .result().uploadId();
+    }
+
+    /**
+     * 上传单个分片
+     * SDK的分片上传接口只接受完整的byte[]，这里改用预签名的分片URL，
+     * 按固定长度把请求流边读边写到MinIO，内存占用与分片大小无关
+     *
+     * @param inputStream 分片数据
+     * @param length 分片长度
+     * @return 分片ETag
+     */
+    public String uploadPart(String bucketName, String objectName, String uploadId,
+                             int partNumber, InputStream inputStream, long length) throws Exception {
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("uploadId", uploadId);
+        queryParams.put("partNumber", String.valueOf(partNumber));
+        String url = getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(Method.PUT)
+                .bucket(bucketName)
+                .object(objectName)
+                .expiry(PART_URL_EXPIRY_SECONDS)
+                .extraQueryParams(queryParams)
+                .build());
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(length);
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                copy(inputStream, outputStream, length);
+            }
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("上传分片失败，HTTP " + status);
+            }
+            String etag = connection.getHeaderField("ETag");
+            if (etag == null) {
+                throw new IOException("上传分片失败，响应中没有ETag");
+            }
+            // 读完响应体，连接才能被复用
+            try (InputStream response = connection.getInputStream()) {
+                while (response.read() >= 0) {
+                    // 丢弃
+                }
+            }
+            return etag.replace("\"", "");
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * 列出已上传的全部分片（按分片号升序）
+     */
+    public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        while (true) {
+            ListPartsResponse response = await(listPartsAsync(bucketName, null, objectName,
+                    LIST_PARTS_PAGE_SIZE, marker, uploadId, null, null));
+            parts.addAll(response.result().partList());
+            if (!response.result().isTruncated()) {
+                return parts;
+            }
+            marker = response.result().nextPartNumberMarker();
+        }
+    }
+
+    /**
+     * 合并分片
+     */
+    public void completeMultipartUpload(String bucketName, String objectName, String uploadId,
+                                        Part[] parts) throws Exception {
+        await(completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null));
+    }
+
+    /**
+     * 取消分片上传并释放已上传的分片
+     */
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+        await(abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null));
+    }
+
+    /**
+     * 复制指定长度的数据，数据不足时报错
+     */
+    private static void copy(InputStream inputStream, OutputStream outputStream, long length) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long remaining = length;
+        while (remaining > 0) {
+            int len = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (len < 0) {
+                throw new IOException("分片数据不完整");
+            }
+            outputStream.write(buffer, 0, len);
+            remaining -= len;
+        }
+    }
+
+    /**
+     * 同步等待异步结果，并还原原始异常
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+}
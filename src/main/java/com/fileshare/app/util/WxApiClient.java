@@ -0,0 +1,320 @@
+package com.fileshare.app.util;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 微信接口HTTP客户端
+ * 共享连接池复用到api.weixin.qq.com的TLS连接，连接、读取和等待连接都有超时；
+ * 并发调用数有上限，超出时快速失败而不是占住Tomcat线程排队；
+ * 连续网络失败达到阈值后熔断一段时间，期间直接失败，到期后放行一个探测请求决定是否恢复
+ */
+@Component
+public class WxApiClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(WxApiClient.class);
+
+    @Value("${wechat.api-base-url:https://api.weixin.qq.com}")
+    private String apiBaseUrl;
+
+    @Value("${wechat.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${wechat.http.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${wechat.http.read-timeout-ms:3000}")
+    private int readTimeoutMs;
+
+    /**
+     * 最大并发调用数，同时也是从连接池取连接的等待上限
+     */
+    @Value("${wechat.http.max-concurrent:50}")
+    private int maxConcurrent;
+
+    @Value("${wechat.http.acquire-timeout-ms:500}")
+    private long acquireTimeoutMs;
+
+    /**
+     * 连续失败多少次后熔断
+     */
+    @Value("${wechat.http.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${wechat.http.breaker.open-seconds:30}")
+    private long openSeconds;
+
+    private CloseableHttpClient httpClient;
+
+    private Semaphore permits;
+
+    private CircuitBreaker breaker;
+
+    private final Map<String, EndpointStats> endpointStats = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(5, TimeUnit.MINUTES);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .setConnectionRequestTimeout((int) acquireTimeoutMs)
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                // 登录凭证只能使用一次，不自动重试
+                .disableAutomaticRetries()
+                .build();
+        permits = new Semaphore(maxConcurrent);
+        breaker = new CircuitBreaker(failureThreshold, TimeUnit.SECONDS.toMillis(openSeconds));
+        logger.info("微信HTTP客户端已初始化: baseUrl={}, maxConnections={}, connectTimeout={}ms, readTimeout={}ms, maxConcurrent={}",
+                apiBaseUrl, maxConnections, connectTimeoutMs, readTimeoutMs, maxConcurrent);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * 发送GET请求
+     *
+     * @param pathAndQuery 接口路径及查询参数，如 /sns/jscode2session?appid=...
+     * @return 微信返回的JSON
+     */
+    public JSONObject get(String pathAndQuery) {
+        return execute(new HttpGet(apiBaseUrl + pathAndQuery), pathAndQuery);
+    }
+
+    /**
+     * 发送JSON格式的POST请求
+     *
+     * @param pathAndQuery 接口路径及查询参数
+     * @param body JSON请求体
+     * @return 微信返回的JSON
+     */
+    public JSONObject post(String pathAndQuery, String body) {
+        HttpPost request = new HttpPost(apiBaseUrl + pathAndQuery);
+        request.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return execute(request, pathAndQuery);
+    }
+
+    /**
+     * 统计信息：熔断状态、并发占用和各接口的调用耗时
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("breakerState", breaker.state());
+        stats.put("inFlight", maxConcurrent - permits.availablePermits());
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("rejectedCount", rejectedCount.sum());
+        stats.put("breakerRejectedCount", breaker.rejectedCount.sum());
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointStats> entry : endpointStats.entrySet()) {
+            endpoints.put(entry.getKey(), entry.getValue().toMap());
+        }
+        stats.put("endpoints", endpoints);
+        return stats;
+    }
+
+    private JSONObject execute(HttpRequestBase request, String pathAndQuery) {
+        String endpoint = endpointOf(pathAndQuery);
+        if (!breaker.allowRequest()) {
+            throw new RuntimeException("微信接口暂不可用(熔断中): " + endpoint);
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            breaker.release();
+            throw new RuntimeException("等待调用微信接口被中断", e);
+        }
+        if (!acquired) {
+            rejectedCount.increment();
+            breaker.release();
+            throw new RuntimeException("微信接口调用繁忙: " + endpoint);
+        }
+
+        EndpointStats stats = endpointStats.computeIfAbsent(endpoint, key -> new EndpointStats());
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String body = httpClient.execute(request, response -> {
+                int statusCode = response.getStatusLine().getStatusCode();
+                String content = response.getEntity() != null
+                        ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+                if (statusCode >= 500) {
+                    throw new IOException("HTTP " + statusCode);
+                }
+                return content;
+            });
+            JSONObject result = JSONUtil.parseObj(body);
+            success = true;
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("调用微信接口失败: " + endpoint + ", " + e.getMessage(), e);
+        } finally {
+            permits.release();
+            stats.record(System.nanoTime() - start, success);
+            if (success) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+        }
+    }
+
+    /**
+     * 去掉查询参数作为统计维度，避免appid、secret等出现在监控中
+     */
+    private static String endpointOf(String pathAndQuery) {
+        int index = pathAndQuery.indexOf('?');
+        return index < 0 ? pathAndQuery : pathAndQuery.substring(0, index);
+    }
+
+    /**
+     * 熔断器：CLOSED 正常放行；OPEN 直接拒绝；到期后进入 HALF_OPEN，只放行一个探测请求
+     */
+    private static class CircuitBreaker {
+
+        private final int failureThreshold;
+
+        private final long openMillis;
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        /**
+         * 熔断截止时间，0表示未熔断
+         */
+        private volatile long openUntil;
+
+        private final AtomicBoolean probing = new AtomicBoolean();
+
+        private final LongAdder rejectedCount = new LongAdder();
+
+        CircuitBreaker(int failureThreshold, long openMillis) {
+            this.failureThreshold = failureThreshold;
+            this.openMillis = openMillis;
+        }
+
+        boolean allowRequest() {
+            long until = openUntil;
+            if (until == 0) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= until && probing.compareAndSet(false, true)) {
+                return true;
+            }
+            rejectedCount.increment();
+            return false;
+        }
+
+        /**
+         * 放行后未实际发出请求时归还探测名额
+         */
+        void release() {
+            probing.set(false);
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            if (openUntil != 0) {
+                openUntil = 0;
+                logger.info("微信接口已恢复，熔断关闭");
+            }
+            probing.set(false);
+        }
+
+        void onFailure() {
+            if (probing.get()) {
+                openUntil = System.currentTimeMillis() + openMillis;
+                probing.set(false);
+                logger.warn("微信接口探测失败，继续熔断 {}ms", openMillis);
+                return;
+            }
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold && openUntil == 0) {
+                openUntil = System.currentTimeMillis() + openMillis;
+                logger.warn("微信接口连续失败 {} 次，熔断 {}ms", failureThreshold, openMillis);
+            }
+        }
+
+        String state() {
+            long until = openUntil;
+            if (until == 0) {
+                return "CLOSED";
+            }
+            return System.currentTimeMillis() < until ? "OPEN" : "HALF_OPEN";
+        }
+    }
+
+    /**
+     * 单个接口的调用统计
+     */
+    private static class EndpointStats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder failureCount = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, boolean success) {
+            count.increment();
+            if (!success) {
+                failureCount.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long calls = count.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", calls);
+            map.put("failureCount", failureCount.sum());
+            map.put("avgMillis", calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / calls));
+            map.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            return map;
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package com.fileshare.app.util;
 
-import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.fileshare.app.cache.WxAccessTokenCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -16,11 +16,18 @@ public class WxPhoneUtil {
     
     private static final Logger logger = LoggerFactory.getLogger(WxPhoneUtil.class);
 
-    @Value("${wechat.appid}")
-    private String appId;
-    
-    @Value("${wechat.secret}")
-    private String secret;
+    /**
+     * access_token无效、已过期、不合法的错误码
+     */
+    private static final int ERRCODE_INVALID_CREDENTIAL = 40001;
+    private static final int ERRCODE_ACCESS_TOKEN_EXPIRED = 42001;
+    private static final int ERRCODE_INVALID_ACCESS_TOKEN = 40014;
+
+    @Autowired
+    private WxAccessTokenCache wxAccessTokenCache;
+
+    @Autowired
+    private WxApiClient wxApiClient;
     
     /**
      * 获取微信手机号
@@ -34,16 +41,24 @@ public class WxPhoneUtil {
         }
         
         try {
-            // 请求微信API获取用户手机号
-            String url = "https://api.weixin.qq.com/wxa/business/getuserphonenumber?access_token=" + getAccessToken();
-            JSONObject param = JSONUtil.createObj();
-            param.set("code", phoneCode);
-            
-            logger.debug("请求微信手机号API: {}", url);
-            String result = HttpUtil.post(url, param.toString());
-            
-            JSONObject response = JSONUtil.parseObj(result);
-            if (response.getInt("errcode", -1) == 0) {
+            String accessToken = wxAccessTokenCache.getAccessToken();
+            if (accessToken == null) {
+                logger.error("获取手机号失败: 无可用的access_token");
+                return null;
+            }
+            JSONObject response = requestPhoneNumber(accessToken, phoneCode);
+            int errcode = response.getInt("errcode", -1);
+            if (isInvalidAccessToken(errcode)) {
+                // 凭证被微信提前作废，强制换新后重试一次
+                accessToken = wxAccessTokenCache.renew(accessToken);
+                if (accessToken == null) {
+                    logger.error("获取手机号失败: 无可用的access_token");
+                    return null;
+                }
+                response = requestPhoneNumber(accessToken, phoneCode);
+                errcode = response.getInt("errcode", -1);
+            }
+            if (errcode == 0) {
                 JSONObject phoneInfo = response.getJSONObject("phone_info");
                 if (phoneInfo != null) {
                     String phoneNumber = phoneInfo.getStr("phoneNumber");
@@ -52,7 +67,7 @@ public class WxPhoneUtil {
                 }
             } else {
                 logger.error("获取手机号失败，错误码：{}, 错误信息：{}", 
-                    response.getInt("errcode", -1), response.getStr("errmsg", "未知错误"));
+                    errcode, response.getStr("errmsg", "未知错误"));
             }
         } catch (Exception e) {
             logger.error("获取手机号异常", e);
@@ -60,29 +75,20 @@ public class WxPhoneUtil {
         
         return null;
     }
-    
+
     /**
-     * 获取微信接口调用凭证（access_token）
+     * 请求微信API获取用户手机号
      */
-    private String getAccessToken() {
-        try {
-            String url = "https://api.weixin.qq.com/cgi-bin/token?grant_type=client_credential&appid=" 
-                + appId + "&secret=" + secret;
-            
-            logger.debug("请求微信access_token");
-            String result = HttpUtil.get(url);
-            
-            JSONObject response = JSONUtil.parseObj(result);
-            String accessToken = response.getStr("access_token");
-            if (accessToken != null && !accessToken.isEmpty()) {
-                return accessToken;
-            } else {
-                logger.error("获取access_token失败: {}", response.getStr("errmsg", "未知错误"));
-            }
-        } catch (Exception e) {
-            logger.error("获取access_token异常", e);
-        }
-        
-        return "";
+    private JSONObject requestPhoneNumber(String accessToken, String phoneCode) {
+        JSONObject param = JSONUtil.createObj();
+        param.set("code", phoneCode);
+
+        logger.debug("请求微信手机号API");
+        return wxApiClient.post("/wxa/business/getuserphonenumber?access_token=" + accessToken, param.toString());
+    }
+
+    private static boolean isInvalidAccessToken(int errcode) {
+        return errcode == ERRCODE_INVALID_CREDENTIAL || errcode == ERRCODE_ACCESS_TOKEN_EXPIRED
+                || errcode == ERRCODE_INVALID_ACCESS_TOKEN;
     }
 } 
\ No newline at end of file
@@ -24,17 +24,20 @@ CREATE TABLE IF NOT EXISTS `file` (
   `file_name` varchar(255) NOT NULL COMMENT '原始文件名',
   `file_size` bigint(20) NOT NULL COMMENT '文件大小（字节）',
   `file_type` varchar(128) DEFAULT NULL COMMENT '文件类型',
-  `storage_path` varchar(255) NOT NULL COMMENT '存储路径',
-  `extract_code` varchar(6) NOT NULL COMMENT '提取码',
+  `storage_path` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '存储路径',
+  `content_hash` char(64) DEFAULT NULL COMMENT '内容SHA-256（为空表示独占存储对象）',
+  `extract_code` varchar(6) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '提取码（区分大小写）',
   `download_count` int(11) NOT NULL DEFAULT '0' COMMENT '下载次数',
   `expire_time` datetime NOT NULL COMMENT '过期时间',
   `create_time` datetime NOT NULL COMMENT '上传时间',
-  `update_time` datetime NOT NULL COMMENT '更新时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间（由数据库写入）',
   `status` tinyint(4) NOT NULL DEFAULT '1' COMMENT '状态（0-已删除，1-正常）',
   PRIMARY KEY (`id`),
-  KEY `idx_user_id` (`user_id`),
-  KEY `idx_extract_code` (`extract_code`),
-  KEY `idx_expire_time` (`expire_time`)
+  KEY `idx_user_status_time` (`user_id`, `status`, `create_time`, `id`),
+  UNIQUE KEY `uk_extract_code` (`extract_code`),
+  KEY `idx_expire_time` (`expire_time`),
+  KEY `idx_update_time` (`update_time`),
+  KEY `idx_storage_path` (`storage_path`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件表';
 
 -- 下载历史表
@@ -47,4 +50,80 @@ CREATE TABLE IF NOT EXISTS `download_history` (
   PRIMARY KEY (`id`),
   KEY `idx_file_id` (`file_id`),
   KEY `idx_user_id` (`user_id`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='下载历史表'; 
\ No newline at end of file
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='下载历史表';
+
+-- 分片上传会话表
+CREATE TABLE IF NOT EXISTS `upload_session` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `upload_id` varchar(255) NOT NULL COMMENT 'MinIO分片上传ID',
+  `user_id` bigint(20) NOT NULL COMMENT '上传用户ID',
+  `file_name` varchar(255) NOT NULL COMMENT '原始文件名',
+  `file_size` bigint(20) NOT NULL COMMENT '文件大小（字节）',
+  `file_type` varchar(128) DEFAULT NULL COMMENT '文件类型',
+  `storage_path` varchar(255) NOT NULL COMMENT '存储路径',
+  `chunk_size` bigint(20) NOT NULL COMMENT '分片大小（字节）',
+  `total_parts` int(11) NOT NULL COMMENT '分片总数',
+  `state` tinyint(4) NOT NULL DEFAULT '1' COMMENT '状态（0-已取消，1-上传中，2-合并中，3-已完成，4-已失败）',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `update_time` datetime NOT NULL COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_upload_id` (`upload_id`),
+  KEY `idx_state_create_time` (`state`, `create_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='分片上传会话表';
+
+-- 文件内容表（按内容去重，引用计数归零时回收MinIO对象）
+CREATE TABLE IF NOT EXISTS `file_content` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `content_hash` char(64) NOT NULL COMMENT '内容SHA-256',
+  `storage_path` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '存储路径',
+  `file_size` bigint(20) NOT NULL COMMENT '文件大小（字节）',
+  `ref_count` int(11) NOT NULL DEFAULT '1' COMMENT '引用计数',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `update_time` datetime NOT NULL COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_content_hash` (`content_hash`),
+  KEY `idx_storage_path` (`storage_path`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件内容表';
+
+-- 存储对账检查点表
+CREATE TABLE IF NOT EXISTS `reconcile_checkpoint` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `task_name` varchar(64) NOT NULL COMMENT '任务名称',
+  `last_key` varchar(1024) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin DEFAULT NULL COMMENT '已处理到的对象名（为空表示上次已完整结束）',
+  `start_time` datetime NOT NULL COMMENT '本轮对账开始时间',
+  `update_time` datetime NOT NULL COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_task_name` (`task_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='存储对账检查点表';
+
+-- 任务租约表（多节点部署时协调定时任务）
+CREATE TABLE IF NOT EXISTS `task_lease` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `lease_key` varchar(128) NOT NULL COMMENT '租约键（任务名或任务分片）',
+  `owner` varchar(128) NOT NULL DEFAULT '' COMMENT '当前持有者（节点标识）',
+  `expire_time` datetime(3) NOT NULL COMMENT '租约到期时间',
+  `finish_time` datetime DEFAULT NULL COMMENT '完成时间（分片租约）',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `update_time` datetime NOT NULL COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_lease_key` (`lease_key`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='任务租约表';
+
+-- 已有库升级
+-- ALTER TABLE `file` ADD COLUMN `content_hash` char(64) DEFAULT NULL COMMENT '内容SHA-256（为空表示独占存储对象）' AFTER `storage_path`;
+
+-- 提取码改为区分大小写并唯一（执行前需先处理已存在的重复提取码）
+-- ALTER TABLE `file` MODIFY COLUMN `extract_code` varchar(6) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '提取码（区分大小写）', DROP INDEX `idx_extract_code`, ADD UNIQUE KEY `uk_extract_code` (`extract_code`);
+
+-- 布隆过滤器增量同步按更新时间查询
+-- ALTER TABLE `file` ADD KEY `idx_update_time` (`update_time`);
+
+-- 文件列表游标分页（覆盖原idx_user_id）
+-- ALTER TABLE `file` DROP INDEX `idx_user_id`, ADD KEY `idx_user_status_time` (`user_id`, `status`, `create_time`, `id`);
+
+-- 存储对账按storage_path归并扫描，排序规则需与对象名的字节序一致
+-- ALTER TABLE `file` MODIFY COLUMN `storage_path` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '存储路径', ADD KEY `idx_storage_path` (`storage_path`);
+-- ALTER TABLE `file_content` MODIFY COLUMN `storage_path` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '存储路径', ADD KEY `idx_storage_path` (`storage_path`);
+
+-- 文件的update_time改由数据库写入，增量同步不受节点时钟偏差影响
+-- ALTER TABLE `file` MODIFY COLUMN `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间（由数据库写入）';
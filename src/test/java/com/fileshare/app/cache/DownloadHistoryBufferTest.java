@@ -0,0 +1,111 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.entity.DownloadHistory;
+import com.fileshare.app.mapper.DownloadHistoryMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 下载历史落盘回放测试
+ */
+class DownloadHistoryBufferTest {
+
+    @TempDir
+    Path spillDir;
+
+    private final List<DownloadHistory> inserted = new CopyOnWriteArrayList<>();
+
+    private DownloadHistoryBuffer buffer;
+
+    @AfterEach
+    void tearDown() {
+        if (buffer != null) {
+            buffer.shutdown();
+        }
+    }
+
+    @Test
+    void truncatedTrailingLineDoesNotBlockReplay() throws Exception {
+        // 上次落盘时进程崩溃，最后一行只写了一半
+        Files.write(spillDir.resolve("replay-1.log"), Arrays.asList(
+                "1\t10\t2024-01-01T10:00\t10.0.0.1",
+                "2\t10\t2024-01-01T10:01\t10.0.0.2",
+                "3\t10\t2024-01-0"), StandardCharsets.UTF_8);
+        Files.write(spillDir.resolve("pending.log"), Arrays.asList(
+                "4\t11\t2024-01-01T10:02\t10.0.0.3",
+                "not-a-number\t11\t2024-01-01T10:03\t10.0.0.4",
+                "5\t11\t2024-01-01T10:04\tnull"), StandardCharsets.UTF_8);
+
+        buffer = newBuffer();
+
+        waitForInserted(4);
+        waitForNoReplayFiles();
+        assertEquals(Arrays.asList(1L, 2L, 4L, 5L),
+                inserted.stream().map(DownloadHistory::getFileId).sorted().collect(Collectors.toList()));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 10, 0), inserted.stream()
+                .filter(history -> history.getFileId() == 1L).findFirst().get().getDownloadTime());
+        assertEquals(Arrays.asList("3\t10\t2024-01-0", "not-a-number\t11\t2024-01-01T10:03\t10.0.0.4"),
+                Files.readAllLines(spillDir.resolve("corrupt.log"), StandardCharsets.UTF_8));
+        assertEquals(2L, buffer.stats().get("corruptCount"));
+    }
+
+    private DownloadHistoryBuffer newBuffer() throws Exception {
+        DownloadHistoryMapper mapper = mock(DownloadHistoryMapper.class);
+        doAnswer(invocation -> {
+            inserted.addAll(invocation.getArgument(0));
+            return 0;
+        }).when(mapper).insertBatch(anyList());
+        DownloadHistoryBuffer historyBuffer = new DownloadHistoryBuffer();
+        ReflectionTestUtils.setField(historyBuffer, "downloadHistoryMapper", mapper);
+        ReflectionTestUtils.setField(historyBuffer, "capacity", 100);
+        ReflectionTestUtils.setField(historyBuffer, "batchSize", 10);
+        ReflectionTestUtils.setField(historyBuffer, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(historyBuffer, "overflowPolicy", "spill");
+        ReflectionTestUtils.setField(historyBuffer, "blockTimeoutMs", 20L);
+        ReflectionTestUtils.setField(historyBuffer, "spillDirectory", spillDir.toString());
+        historyBuffer.init();
+        return historyBuffer;
+    }
+
+    private void waitForInserted(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (inserted.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, inserted.size());
+    }
+
+    private void waitForNoReplayFiles() throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try (Stream<Path> files = Files.list(spillDir)) {
+                if (files.noneMatch(file -> file.getFileName().toString().startsWith("replay-"))) {
+                    break;
+                }
+            }
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(spillDir.resolve("pending.log")));
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.filter(file -> file.getFileName().toString().startsWith("replay-")).count());
+        }
+    }
+}
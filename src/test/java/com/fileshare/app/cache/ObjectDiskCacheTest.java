@@ -0,0 +1,132 @@
+package com.fileshare.app.cache;
+
+import com.fileshare.app.config.MinioConfig;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import okhttp3.Headers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 磁盘缓存测试：淘汰后延迟删除不能删掉重新加载的文件
+ */
+class ObjectDiskCacheTest {
+
+    private static final String STORAGE_PATH = "files/2024/01/report.pdf";
+
+    private static final byte[] CONTENT = "cached object content".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path cacheDir;
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    private ObjectDiskCache diskCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MinioClient minioClient = mock(MinioClient.class);
+        MinioConfig minioConfig = mock(MinioConfig.class);
+        when(minioConfig.getBucketName()).thenReturn("bucket");
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(invocation -> {
+            downloads.incrementAndGet();
+            return new GetObjectResponse(Headers.of(), "bucket", "", STORAGE_PATH, new ByteArrayInputStream(CONTENT));
+        });
+        diskCache = newCache(minioClient, minioConfig);
+    }
+
+    @AfterEach
+    void tearDown() {
+        diskCache.shutdown();
+    }
+
+    @Test
+    void delayedDeleteKeepsRefilledFile() throws Exception {
+        Path first = fill(1);
+
+        // 淘汰后在延迟删除到期前重新加载同一对象
+        diskCache.invalidate(STORAGE_PATH);
+        Path second = fill(2);
+        assertNotEquals(first, second);
+
+        // 等待第一次淘汰的延迟删除执行
+        Thread.sleep(1500);
+
+        Path cached = diskCache.lookup(STORAGE_PATH, CONTENT.length);
+        assertEquals(second, cached);
+        assertArrayEquals(CONTENT, Files.readAllBytes(cached));
+        assertFalse(Files.exists(first));
+    }
+
+    @Test
+    void restartKeepsNewestGenerationOnly() throws Exception {
+        Path first = fill(1);
+        diskCache.invalidate(STORAGE_PATH);
+        Path second = fill(2);
+        diskCache.shutdown();
+        // 模拟退出前未来得及延迟删除，另有旧版本遗留的无代次文件
+        assertTrue(Files.exists(first));
+        Files.write(cacheDir.resolve("legacy-file"), CONTENT);
+
+        diskCache = newCache(mock(MinioClient.class), mock(MinioConfig.class));
+        assertEquals(second, diskCache.lookup(STORAGE_PATH, CONTENT.length));
+        assertFalse(Files.exists(cacheDir.resolve("legacy-file")));
+        Thread.sleep(1500);
+        assertFalse(Files.exists(first));
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private ObjectDiskCache newCache(MinioClient minioClient, MinioConfig minioConfig) throws Exception {
+        ObjectDiskCache cache = new ObjectDiskCache();
+        ReflectionTestUtils.setField(cache, "minioClient", minioClient);
+        ReflectionTestUtils.setField(cache, "minioConfig", minioConfig);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directory", cacheDir.toString());
+        ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofMegabytes(10));
+        ReflectionTestUtils.setField(cache, "maxEntrySize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(cache, "deleteDelaySeconds", 1L);
+        cache.init();
+        return cache;
+    }
+
+    /**
+     * 异步加载并等待完成；与下载请求一样每次未命中都触发加载，
+     * 上一次加载的收尾尚未结束时本次会被跳过
+     */
+    private Path fill(int expectedDownloads) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        Path cached = null;
+        while (cached == null && System.currentTimeMillis() < deadline) {
+            diskCache.loadAsync(STORAGE_PATH, CONTENT.length);
+            Thread.sleep(10);
+            cached = diskCache.lookup(STORAGE_PATH, CONTENT.length);
+        }
+        assertNotNull(cached);
+        assertEquals(expectedDownloads, downloads.get());
+        return cached;
+    }
+}
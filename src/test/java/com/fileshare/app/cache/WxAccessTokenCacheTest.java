@@ -0,0 +1,140 @@
+package com.fileshare.app.cache;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.fileshare.app.util.WxApiClient;
+import com.fileshare.app.util.WxApiStub;
+import com.fileshare.app.util.WxPhoneUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * access_token缓存测试，使用本地微信接口桩
+ * 桩的行为与stable_token一致：普通模式返回当前凭证，force_refresh时换发新凭证
+ */
+class WxAccessTokenCacheTest {
+
+    private static final String TOKEN_PATH = "/cgi-bin/stable_token";
+
+    private static final String PHONE_PATH = "/wxa/business/getuserphonenumber";
+
+    private WxApiStub stub;
+
+    private WxAccessTokenCache tokenCache;
+
+    private final AtomicInteger generation = new AtomicInteger(1);
+
+    private final AtomicInteger forceRefreshRequests = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new WxApiStub();
+        stub.on(TOKEN_PATH, (query, body) -> {
+            // 放大刷新耗时，让并发请求在刷新期间到达
+            Thread.sleep(200);
+            if (JSONUtil.parseObj(body).getBool("force_refresh", false)) {
+                forceRefreshRequests.incrementAndGet();
+                generation.incrementAndGet();
+            }
+            return WxApiStub.Response.json("{\"access_token\":\"token-" + generation.get() + "\",\"expires_in\":7200}");
+        });
+        stub.on(PHONE_PATH, (query, body) -> query.equals("access_token=token-" + generation.get())
+                ? WxApiStub.Response.json("{\"errcode\":0,\"phone_info\":{\"phoneNumber\":\"13800000000\"}}")
+                : WxApiStub.Response.json("{\"errcode\":40001,\"errmsg\":\"invalid credential\"}"));
+
+        WxApiClient client = stub.newClient(2000, 50, 5, 30);
+        tokenCache = new WxAccessTokenCache();
+        ReflectionTestUtils.setField(tokenCache, "appId", "wx-app");
+        ReflectionTestUtils.setField(tokenCache, "secret", "wx-secret");
+        ReflectionTestUtils.setField(tokenCache, "wxApiClient", client);
+        ReflectionTestUtils.setField(tokenCache, "refreshAheadSeconds", 300L);
+        ReflectionTestUtils.setField(tokenCache, "waitTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(tokenCache, "forceRefreshIntervalSeconds", 60L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void concurrentMissesTriggerSingleRefresh() throws Exception {
+        int callers = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return tokenCache.getAccessToken();
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertEquals("token-1", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, stub.hits(TOKEN_PATH));
+
+        assertEquals("token-1", tokenCache.getAccessToken());
+        assertEquals(1, stub.hits(TOKEN_PATH));
+        assertEquals(1L, tokenCache.stats().get("refreshCount"));
+    }
+
+    @Test
+    void rejectedTokenIsForceRefreshedOnce() {
+        assertEquals("token-1", tokenCache.getAccessToken());
+
+        assertEquals("token-2", tokenCache.renew("token-1"));
+        assertEquals(1, forceRefreshRequests.get());
+        // 其他持有旧凭证的请求直接拿到已换新的凭证
+        assertEquals("token-2", tokenCache.renew("token-1"));
+        assertEquals(2, stub.hits(TOKEN_PATH));
+        // 最小间隔内不再强制刷新
+        assertNull(tokenCache.renew("token-2"));
+        assertEquals(1, forceRefreshRequests.get());
+    }
+
+    @Test
+    void phoneNumberRecoversFromRevokedToken() {
+        assertEquals("token-1", tokenCache.getAccessToken());
+        // 凭证在别处被强制刷新，本地缓存的token-1已失效
+        generation.incrementAndGet();
+
+        WxPhoneUtil phoneUtil = new WxPhoneUtil();
+        ReflectionTestUtils.setField(phoneUtil, "wxAccessTokenCache", tokenCache);
+        ReflectionTestUtils.setField(phoneUtil, "wxApiClient", ReflectionTestUtils.getField(tokenCache, "wxApiClient"));
+
+        assertEquals("13800000000", phoneUtil.getPhoneNumber("phone-code"));
+        assertEquals(2, stub.hits(PHONE_PATH));
+        assertEquals(1, forceRefreshRequests.get());
+    }
+
+    @Test
+    void failedRefreshReturnsNull() {
+        stub.on(TOKEN_PATH, (query, body) -> WxApiStub.Response.json("{\"errcode\":40013,\"errmsg\":\"invalid appid\"}"));
+
+        assertNull(tokenCache.getAccessToken());
+        JSONObject stats = JSONUtil.parseObj(tokenCache.stats());
+        assertEquals(1, stats.getInt("refreshFailureCount"));
+        assertFalse(stats.getBool("cached"));
+    }
+}
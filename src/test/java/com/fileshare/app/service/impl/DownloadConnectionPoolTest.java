@@ -0,0 +1,288 @@
+package com.fileshare.app.service.impl;
+
+import com.fileshare.app.cache.DownloadCounter;
+import com.fileshare.app.cache.DownloadHistoryBuffer;
+import com.fileshare.app.cache.ExtractCodeFilter;
+import com.fileshare.app.cache.FileInfoCache;
+import com.fileshare.app.cache.ObjectDiskCache;
+import com.fileshare.app.cache.SmallFileCache;
+import com.fileshare.app.config.MinioConfig;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.mapper.FileInfoMapper;
+import com.fileshare.app.service.FileContentService;
+import com.fileshare.app.service.FileService;
+import com.fileshare.app.util.ClientIpResolver;
+import com.fileshare.app.util.ExtractCodeUtil;
+import com.fileshare.app.util.ResultUtil.Result;
+import com.zaxxer.hikari.HikariDataSource;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import okhttp3.Headers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * 慢速下载占用数据库连接测试
+ * 连接池只有2个连接，8个客户端同时慢速下载时，其他请求仍能立即拿到连接；
+ * 对照组把下载放进事务，2个慢速下载就会耗尽连接池
+ */
+@SpringJUnitConfig(DownloadConnectionPoolTest.TestConfig.class)
+@TestPropertySource(properties = "file.expiration-days=1")
+class DownloadConnectionPoolTest {
+
+    private static final int POOL_SIZE = 2;
+
+    private static final int SLOW_DOWNLOADS = 8;
+
+    private static final byte[] CONTENT = new byte[64 * 1024];
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private FileInfoCache fileInfoCache;
+
+    @MockBean
+    private ExtractCodeFilter extractCodeFilter;
+
+    @MockBean
+    private SmallFileCache smallFileCache;
+
+    @MockBean
+    private MinioClient minioClient;
+
+    @MockBean
+    private MinioConfig minioConfig;
+
+    @MockBean
+    private FileInfoMapper fileInfoMapper;
+
+    @MockBean
+    private ExtractCodeUtil extractCodeUtil;
+
+    @MockBean
+    private DownloadHistoryBuffer downloadHistoryBuffer;
+
+    @MockBean
+    private ClientIpResolver clientIpResolver;
+
+    @MockBean
+    private FileContentService fileContentService;
+
+    @MockBean
+    private ObjectDiskCache objectDiskCache;
+
+    @MockBean
+    private DownloadCounter downloadCounter;
+
+    private ExecutorService clients;
+
+    private CountDownLatch releaseClients;
+
+    private CountDownLatch clientsWriting;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(extractCodeFilter.mightContain(anyString())).thenReturn(true);
+        when(smallFileCache.accepts(anyLong())).thenReturn(false);
+        when(minioConfig.getBucketName()).thenReturn("bucket");
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(invocation ->
+                new GetObjectResponse(Headers.of(), "bucket", "", "object", new ByteArrayInputStream(CONTENT)));
+        // 文件信息查询真实地从连接池取连接，有事务时连接绑定到事务上
+        when(fileInfoCache.get(anyString(), any())).thenAnswer(invocation -> {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            return fileInfo();
+        });
+        clients = Executors.newFixedThreadPool(SLOW_DOWNLOADS);
+        releaseClients = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseClients.countDown();
+        clients.shutdownNow();
+    }
+
+    @Test
+    void slowDownloadsDoNotHoldConnections() throws Exception {
+        List<Future<Result<Void>>> downloads = startSlowDownloads(SLOW_DOWNLOADS,
+                () -> fileService.downloadFile("abc123", null, new MockHttpServletRequest(), new SlowClientResponse()));
+
+        assertEquals(0, dataSource.getHikariPoolMXBean().getActiveConnections());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+
+        releaseClients.countDown();
+        for (Future<Result<Void>> download : downloads) {
+            assertEquals(200, download.get(10, TimeUnit.SECONDS).getCode());
+        }
+    }
+
+    @Test
+    void transactionalDownloadsExhaustPool() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        startSlowDownloads(POOL_SIZE, () -> transaction.execute(status ->
+                fileService.downloadFile("abc123", null, new MockHttpServletRequest(), new SlowClientResponse())));
+
+        assertEquals(POOL_SIZE, dataSource.getHikariPoolMXBean().getActiveConnections());
+        assertThrows(CannotGetJdbcConnectionException.class,
+                () -> jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+    }
+
+    /**
+     * 启动慢速下载，等到所有下载都进入传输阶段后返回
+     */
+    private List<Future<Result<Void>>> startSlowDownloads(int count, Supplier<Result<Void>> download)
+            throws InterruptedException {
+        clientsWriting = new CountDownLatch(count);
+        List<Future<Result<Void>>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(clients.submit(download::get));
+        }
+        assertTrue(clientsWriting.await(10, TimeUnit.SECONDS), "下载未进入传输阶段");
+        return futures;
+    }
+
+    private static FileInfo fileInfo() {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setId(1L);
+        fileInfo.setFileName("report.pdf");
+        fileInfo.setFileType("application/pdf");
+        fileInfo.setFileSize((long) CONTENT.length);
+        fileInfo.setStoragePath("2026/10/17/report.pdf");
+        fileInfo.setExtractCode("abc123");
+        fileInfo.setExpireTime(LocalDateTime.now().plusDays(1));
+        return fileInfo;
+    }
+
+    /**
+     * 模拟慢速客户端：第一次写入时阻塞，直到测试放行
+     */
+    private class SlowClientResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+
+            private boolean started;
+
+            @Override
+            public void write(int b) throws IOException {
+                awaitRelease();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                awaitRelease();
+            }
+
+            private void awaitRelease() throws IOException {
+                if (started) {
+                    return;
+                }
+                started = true;
+                clientsWriting.countDown();
+                try {
+                    releaseClients.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("客户端断开", e);
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TestConfig {
+
+        @Bean
+        public static ConversionService conversionService() {
+            return ApplicationConversionService.getSharedInstance();
+        }
+
+        @Bean(destroyMethod = "close")
+        public HikariDataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:download-pool;DB_CLOSE_DELAY=-1");
+            dataSource.setMaximumPoolSize(POOL_SIZE);
+            dataSource.setConnectionTimeout(500);
+            return dataSource;
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(HikariDataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(HikariDataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        public FileServiceImpl fileService() {
+            return new FileServiceImpl();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.fileshare.app.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpRange;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 下载Range解析与计数规则测试
+ */
+class FileServiceImplRangeTest {
+
+    private static final String ETAG = "\"abc\"";
+
+    private static final long SIZE = 1000;
+
+    @Test
+    void noRangeHeaderMeansFullDownload() {
+        assertTrue(FileServiceImpl.resolveRanges(null, null, ETAG, SIZE).isEmpty());
+        assertTrue(FileServiceImpl.resolveRanges("  ", null, ETAG, SIZE).isEmpty());
+    }
+
+    @Test
+    void malformedRangeIsIgnored() {
+        assertTrue(FileServiceImpl.resolveRanges("bytes=abc", null, ETAG, SIZE).isEmpty());
+        assertTrue(FileServiceImpl.resolveRanges("items=0-10", null, ETAG, SIZE).isEmpty());
+        assertTrue(FileServiceImpl.resolveRanges("bytes=10-5", null, ETAG, SIZE).isEmpty());
+    }
+
+    @Test
+    void mismatchedIfRangeMeansFullDownload() {
+        assertTrue(FileServiceImpl.resolveRanges("bytes=0-10", "\"other\"", ETAG, SIZE).isEmpty());
+        assertEquals(1, FileServiceImpl.resolveRanges("bytes=0-10", ETAG, ETAG, SIZE).size());
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> FileServiceImpl.resolveRanges("bytes=1000-", null, ETAG, SIZE));
+        assertThrows(IllegalArgumentException.class,
+                () -> FileServiceImpl.resolveRanges("bytes=0-", null, ETAG, 0));
+    }
+
+    @Test
+    void tooManyRangesAreRejected() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i < 17; i++) {
+            header.append(i == 0 ? "" : ",").append(i * 10).append('-').append(i * 10 + 5);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> FileServiceImpl.resolveRanges(header.toString(), null, ETAG, SIZE));
+    }
+
+    @Test
+    void suffixRangeResolvesAgainstFileSize() {
+        List<HttpRange> ranges = FileServiceImpl.resolveRanges("bytes=-100", null, ETAG, SIZE);
+        assertEquals(900, ranges.get(0).getRangeStart(SIZE));
+        assertEquals(999, ranges.get(0).getRangeEnd(SIZE));
+    }
+
+    @Test
+    void onlyResponsesReachingEndOfFileAreCounted() {
+        assertTrue(FileServiceImpl.countsAsDownload(FileServiceImpl.resolveRanges(null, null, ETAG, SIZE), SIZE));
+        assertFalse(FileServiceImpl.countsAsDownload(FileServiceImpl.resolveRanges("bytes=0-1", null, ETAG, SIZE), SIZE));
+        assertTrue(FileServiceImpl.countsAsDownload(FileServiceImpl.resolveRanges("bytes=0-", null, ETAG, SIZE), SIZE));
+        assertTrue(FileServiceImpl.countsAsDownload(FileServiceImpl.resolveRanges("bytes=500-", null, ETAG, SIZE), SIZE));
+        assertTrue(FileServiceImpl.countsAsDownload(FileServiceImpl.resolveRanges("bytes=0-9,990-5000", null, ETAG, SIZE), SIZE));
+    }
+}
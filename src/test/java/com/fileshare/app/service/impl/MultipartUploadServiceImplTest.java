@@ -0,0 +1,256 @@
+package com.fileshare.app.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.config.GlobalConfig;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import com.fileshare.app.config.MinioConfig;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.mapper.FileContentMapper;
+import com.fileshare.app.mapper.FileInfoMapper;
+import com.fileshare.app.mapper.UploadSessionMapper;
+import com.fileshare.app.service.FileContentService;
+import com.fileshare.app.util.MinioMultipartClient;
+import com.fileshare.app.util.ResultUtil.Result;
+import com.zaxxer.hikari.HikariDataSource;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.messages.Part;
+import okhttp3.Headers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 分片上传服务测试，在H2的MySQL模式下验证合并去重以及停留在合并中的会话能被收尾
+ */
+class MultipartUploadServiceImplTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final String HELLO_SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    private HikariDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private MinioMultipartClient minioMultipartClient;
+
+    private MinioClient minioClient;
+
+    private FileServiceImpl fileService;
+
+    private FileContentService fileContentService;
+
+    private MultipartUploadServiceImpl multipartUploadService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:upload-session-clean;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE upload_session (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "upload_id VARCHAR(255) NOT NULL, " +
+                "user_id BIGINT NOT NULL, " +
+                "file_name VARCHAR(255) NOT NULL, " +
+                "file_size BIGINT NOT NULL, " +
+                "file_type VARCHAR(128), " +
+                "storage_path VARCHAR(255) NOT NULL, " +
+                "chunk_size BIGINT NOT NULL, " +
+                "total_parts INT NOT NULL, " +
+                "state TINYINT NOT NULL, " +
+                "create_time DATETIME NOT NULL, " +
+                "update_time DATETIME NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE file (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "user_id BIGINT NOT NULL, " +
+                "file_name VARCHAR(255) NOT NULL, " +
+                "file_size BIGINT NOT NULL, " +
+                "file_type VARCHAR(128), " +
+                "storage_path VARCHAR(255) NOT NULL, " +
+                "content_hash CHAR(64), " +
+                "extract_code VARCHAR(6) NOT NULL, " +
+                "download_count INT DEFAULT 0, " +
+                "expire_time DATETIME NOT NULL, " +
+                "create_time DATETIME NOT NULL, " +
+                "update_time DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                "status TINYINT DEFAULT 1)");
+        jdbcTemplate.execute("CREATE TABLE file_content (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "content_hash CHAR(64) NOT NULL, " +
+                "storage_path VARCHAR(255) NOT NULL, " +
+                "file_size BIGINT NOT NULL, " +
+                "ref_count INT DEFAULT 1, " +
+                "create_time DATETIME NOT NULL, " +
+                "update_time DATETIME NOT NULL)");
+
+        // 与application.yml一致：status为0表示已删除，需在注册Mapper前设置
+        GlobalConfig.DbConfig dbConfig = new GlobalConfig.DbConfig();
+        dbConfig.setLogicDeleteValue("0");
+        dbConfig.setLogicNotDeleteValue("1");
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        GlobalConfigUtils.setGlobalConfig(configuration, new GlobalConfig().setDbConfig(dbConfig));
+        configuration.addMapper(UploadSessionMapper.class);
+        configuration.addMapper(FileInfoMapper.class);
+        configuration.addMapper(FileContentMapper.class);
+        MybatisSqlSessionFactoryBean factoryBean = new MybatisSqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setConfiguration(configuration);
+        SqlSessionTemplate sqlSession = new SqlSessionTemplate(factoryBean.getObject());
+
+        minioMultipartClient = mock(MinioMultipartClient.class);
+        minioClient = mock(MinioClient.class);
+        fileService = mock(FileServiceImpl.class);
+        fileContentService = mock(FileContentService.class);
+        when(fileContentService.removeStorageObjects(anyList())).thenReturn(Collections.emptyList());
+        MinioConfig minioConfig = new MinioConfig();
+        minioConfig.setBucketName(BUCKET);
+
+        multipartUploadService = new MultipartUploadServiceImpl();
+        ReflectionTestUtils.setField(multipartUploadService, "baseMapper",
+                sqlSession.getMapper(UploadSessionMapper.class));
+        ReflectionTestUtils.setField(multipartUploadService, "fileInfoMapper",
+                sqlSession.getMapper(FileInfoMapper.class));
+        ReflectionTestUtils.setField(multipartUploadService, "fileContentMapper",
+                sqlSession.getMapper(FileContentMapper.class));
+        ReflectionTestUtils.setField(multipartUploadService, "minioMultipartClient", minioMultipartClient);
+        ReflectionTestUtils.setField(multipartUploadService, "minioClient", minioClient);
+        ReflectionTestUtils.setField(multipartUploadService, "fileService", fileService);
+        ReflectionTestUtils.setField(multipartUploadService, "minioConfig", minioConfig);
+        ReflectionTestUtils.setField(multipartUploadService, "fileContentService", fileContentService);
+        ReflectionTestUtils.setField(multipartUploadService, "sessionExpireHours", 24);
+        ReflectionTestUtils.setField(multipartUploadService, "completingTimeoutMinutes", 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.close();
+    }
+
+    @Test
+    void completeUploadHashesMergedObjectAndDeduplicates() throws Exception {
+        insertSession("upload-5", "e.bin", 1, LocalDateTime.now());
+        mockMergedObject("e.bin", "hello");
+        when(fileService.deduplicate(HELLO_SHA256, 5L, "e.bin")).thenReturn("existing.bin");
+        FileInfo created = new FileInfo();
+        created.setId(10L);
+        when(fileService.createFileRecord(any(), anyLong(), any(), any(), any(), any())).thenReturn(created);
+
+        Result<FileInfo> result = multipartUploadService.completeUpload("upload-5", 1L);
+
+        assertEquals(200, result.getCode());
+        verify(fileService).createFileRecord("f", 5L, null, "existing.bin", HELLO_SHA256, 1L);
+        assertEquals(3, stateOf("upload-5"));
+        assertEquals("existing.bin", jdbcTemplate.queryForObject(
+                "SELECT storage_path FROM upload_session WHERE upload_id = 'upload-5'", String.class));
+    }
+
+    @Test
+    void completeUploadReleasesContentWhenRecordFails() throws Exception {
+        insertSession("upload-6", "f.bin", 1, LocalDateTime.now());
+        mockMergedObject("f.bin", "hello");
+        when(fileService.deduplicate(HELLO_SHA256, 5L, "f.bin")).thenReturn("existing.bin");
+        when(fileService.createFileRecord(any(), anyLong(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("db down"));
+        when(fileContentService.release(HELLO_SHA256)).thenReturn(false);
+
+        Result<FileInfo> result = multipartUploadService.completeUpload("upload-6", 1L);
+
+        assertEquals(500, result.getCode());
+        assertEquals(4, stateOf("upload-6"));
+        verify(fileContentService).release(HELLO_SHA256);
+        // 内容仍被其他文件引用，不能删除
+        verify(fileContentService, never()).removeStorageObjects(anyList());
+    }
+
+    @Test
+    void staleCompletingSessionWithoutRecordIsAbortedAndObjectRemoved() throws Exception {
+        insertSession("upload-1", "a.bin", 2, LocalDateTime.now().minusHours(1));
+        doThrow(new IllegalStateException("NoSuchUpload"))
+                .when(minioMultipartClient).abortMultipartUpload(any(), any(), any());
+
+        assertEquals(1, multipartUploadService.cleanExpiredSessions());
+
+        assertEquals(4, stateOf("upload-1"));
+        verify(minioMultipartClient).abortMultipartUpload(BUCKET, "a.bin", "upload-1");
+        verify(fileContentService).removeStorageObjects(Collections.singletonList("a.bin"));
+    }
+
+    @Test
+    void staleCompletingSessionWithRecordIsMarkedCompleted() throws Exception {
+        insertSession("upload-2", "b.bin", 2, LocalDateTime.now().minusHours(1));
+        jdbcTemplate.update("INSERT INTO file (user_id, file_name, file_size, storage_path, extract_code, " +
+                "expire_time, create_time) VALUES (1, 'b', 10, 'b.bin', 'Ab12Cd', ?, ?)",
+                LocalDateTime.now().plusDays(7), LocalDateTime.now());
+
+        assertEquals(1, multipartUploadService.cleanExpiredSessions());
+
+        assertEquals(3, stateOf("upload-2"));
+        verify(minioMultipartClient, never()).abortMultipartUpload(any(), any(), any());
+        verify(fileContentService, never()).removeStorageObjects(anyList());
+    }
+
+    @Test
+    void staleCompletingSessionKeepsObjectRegisteredAsContent() throws Exception {
+        insertSession("upload-3", "c.bin", 2, LocalDateTime.now().minusHours(1));
+        jdbcTemplate.update("INSERT INTO file_content (content_hash, storage_path, file_size, create_time, " +
+                "update_time) VALUES ('hash', 'c.bin', 10, ?, ?)", LocalDateTime.now(), LocalDateTime.now());
+
+        assertEquals(1, multipartUploadService.cleanExpiredSessions());
+
+        assertEquals(4, stateOf("upload-3"));
+        verify(minioMultipartClient).abortMultipartUpload(BUCKET, "c.bin", "upload-3");
+        verify(fileContentService, never()).removeStorageObjects(anyList());
+    }
+
+    @Test
+    void recentCompletingSessionIsLeftAlone() throws Exception {
+        insertSession("upload-4", "d.bin", 2, LocalDateTime.now().minusMinutes(5));
+
+        assertEquals(0, multipartUploadService.cleanExpiredSessions());
+
+        assertEquals(2, stateOf("upload-4"));
+        verify(minioMultipartClient, never()).abortMultipartUpload(any(), any(), any());
+    }
+
+    private void mockMergedObject(String storagePath, String content) throws Exception {
+        when(minioMultipartClient.listParts(eq(BUCKET), eq(storagePath), any()))
+                .thenReturn(Collections.singletonList(new Part(1, "etag-1")));
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenReturn(new GetObjectResponse(Headers.of(),
+                BUCKET, "", storagePath, new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private void insertSession(String uploadId, String storagePath, int state, LocalDateTime updateTime) {
+        jdbcTemplate.update("INSERT INTO upload_session (upload_id, user_id, file_name, file_size, storage_path, " +
+                "chunk_size, total_parts, state, create_time, update_time) VALUES (?, 1, 'f', 5, ?, 5, 1, ?, ?, ?)",
+                uploadId, storagePath, state, updateTime, updateTime);
+    }
+
+    private int stateOf(String uploadId) {
+        return jdbcTemplate.queryForObject("SELECT state FROM upload_session WHERE upload_id = ?",
+                Integer.class, uploadId);
+    }
+}
@@ -0,0 +1,138 @@
+package com.fileshare.app.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import com.fileshare.app.cache.UserProfileCache;
+import com.fileshare.app.entity.User;
+import com.fileshare.app.mapper.UserMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 首次登录并发创建用户测试，在H2的MySQL模式下执行UserMapper中的真实SQL
+ */
+class UserUpsertConcurrencyTest {
+
+    private static final int CALLERS = 32;
+
+    private HikariDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:user-upsert;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(CALLERS);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE user (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "open_id VARCHAR(64) NOT NULL, " +
+                "nickname VARCHAR(64), " +
+                "avatar_url VARCHAR(255), " +
+                "phone_number VARCHAR(20), " +
+                "create_time DATETIME, " +
+                "update_time DATETIME, " +
+                "status TINYINT DEFAULT 1, " +
+                "CONSTRAINT uk_open_id UNIQUE (open_id))");
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.addMapper(UserMapper.class);
+        MybatisSqlSessionFactoryBean factoryBean = new MybatisSqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setConfiguration(configuration);
+        UserMapper userMapper = new SqlSessionTemplate(factoryBean.getObject()).getMapper(UserMapper.class);
+
+        userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "baseMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "userProfileCache", mock(UserProfileCache.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE user");
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentFirstLoginsCreateSingleUser() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<User>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                String phoneNumber = "1380000" + String.format("%04d", i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return findOrCreateUser("open-id-1", "微信用户", phoneNumber);
+                }));
+            }
+            start.countDown();
+
+            Long userId = null;
+            for (Future<User> result : results) {
+                // 任何一个请求出现唯一键冲突都会在这里抛出
+                User user = result.get(10, TimeUnit.SECONDS);
+                assertNotNull(user);
+                if (userId == null) {
+                    userId = user.getId();
+                }
+                assertEquals(userId, user.getId());
+                assertEquals(1, user.getStatus());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user", Integer.class));
+    }
+
+    @Test
+    void existingUserKeepsProfileAndUpdatesPhoneOnlyWhenProvided() {
+        User created = findOrCreateUser("open-id-2", "原昵称", "13800000000");
+
+        User loggedInAgain = findOrCreateUser("open-id-2", "新昵称", null);
+        assertEquals(created.getId(), loggedInAgain.getId());
+        assertEquals("原昵称", loggedInAgain.getNickname());
+        assertEquals("13800000000", loggedInAgain.getPhoneNumber());
+
+        User phoneChanged = findOrCreateUser("open-id-2", "新昵称", "13900000000");
+        assertEquals(created.getId(), phoneChanged.getId());
+        assertEquals("13900000000", phoneChanged.getPhoneNumber());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user", Integer.class));
+    }
+
+    @Test
+    void disabledUserIsReturnedForStatusCheck() {
+        User created = findOrCreateUser("open-id-3", "微信用户", null);
+        jdbcTemplate.update("UPDATE user SET status = 0 WHERE id = ?", created.getId());
+
+        User disabled = findOrCreateUser("open-id-3", "微信用户", null);
+        assertEquals(created.getId(), disabled.getId());
+        assertEquals(0, disabled.getStatus());
+    }
+
+    private User findOrCreateUser(String openId, String nickName, String phoneNumber) {
+        return ReflectionTestUtils.invokeMethod(userService, "findOrCreateUser",
+                openId, nickName, "/static/images/logo.png", phoneNumber);
+    }
+}
@@ -0,0 +1,165 @@
+package com.fileshare.app.service.impl;
+
+import com.fileshare.app.cache.UserProfileCache;
+import com.fileshare.app.cache.WxAccessTokenCache;
+import com.fileshare.app.controller.vo.LoginVo;
+import com.fileshare.app.entity.User;
+import com.fileshare.app.mapper.UserMapper;
+import com.fileshare.app.util.JwtUtil;
+import com.fileshare.app.util.ResultUtil.Result;
+import com.fileshare.app.util.WxApiClient;
+import com.fileshare.app.util.WxApiStub;
+import com.fileshare.app.util.WxPhoneUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 微信登录耗时测试：本地微信接口桩为两个接口各加上固定延迟，
+ * 对比依次调用两个接口的耗时与并行登录的耗时
+ */
+class WxLoginLatencyTest {
+
+    private static final long WX_DELAY_MS = 300;
+
+    private WxApiStub stub;
+
+    private WxApiClient wxApiClient;
+
+    private WxPhoneUtil wxPhoneUtil;
+
+    private UserMapper userMapper;
+
+    private UserServiceImpl userService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new WxApiStub();
+        stub.on("/sns/jscode2session", (query, body) -> {
+            Thread.sleep(WX_DELAY_MS);
+            return WxApiStub.Response.json("{\"openid\":\"open-id-1\",\"session_key\":\"key\"}");
+        });
+        stub.on("/wxa/business/getuserphonenumber", (query, body) -> {
+            Thread.sleep(WX_DELAY_MS);
+            return WxApiStub.Response.json("{\"errcode\":0,\"phone_info\":{\"phoneNumber\":\"13800000000\"}}");
+        });
+        stub.on("/cgi-bin/stable_token", (query, body) ->
+                WxApiStub.Response.json("{\"access_token\":\"token-1\",\"expires_in\":7200}"));
+
+        wxApiClient = stub.newClient(2000, 50, 5, 30);
+
+        WxAccessTokenCache tokenCache = new WxAccessTokenCache();
+        ReflectionTestUtils.setField(tokenCache, "appId", "wx-app");
+        ReflectionTestUtils.setField(tokenCache, "secret", "wx-secret");
+        ReflectionTestUtils.setField(tokenCache, "wxApiClient", wxApiClient);
+        ReflectionTestUtils.setField(tokenCache, "refreshAheadSeconds", 300L);
+        ReflectionTestUtils.setField(tokenCache, "waitTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(tokenCache, "forceRefreshIntervalSeconds", 60L);
+        // 预先取得access_token，只比较两个业务接口的耗时
+        assertEquals("token-1", tokenCache.getAccessToken());
+
+        wxPhoneUtil = new WxPhoneUtil();
+        ReflectionTestUtils.setField(wxPhoneUtil, "wxAccessTokenCache", tokenCache);
+        ReflectionTestUtils.setField(wxPhoneUtil, "wxApiClient", wxApiClient);
+
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "wx-login-latency-test-secret");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3600L);
+        ReflectionTestUtils.setField(jwtUtil, "fastVerify", true);
+        jwtUtil.init();
+
+        userMapper = mock(UserMapper.class);
+        doAnswer(invocation -> {
+            invocation.<User>getArgument(0).setId(42L);
+            return 1;
+        }).when(userMapper).upsertByOpenId(any(User.class));
+        when(userMapper.selectByIdIncludingDisabled(anyLong())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            user.setOpenId("open-id-1");
+            user.setNickname("测试用户");
+            user.setPhoneNumber("13800000000");
+            user.setStatus(1);
+            return user;
+        });
+
+        userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "baseMapper", userMapper);
+        ReflectionTestUtils.setField(userService, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(userService, "wxPhoneUtil", wxPhoneUtil);
+        ReflectionTestUtils.setField(userService, "wxApiClient", wxApiClient);
+        ReflectionTestUtils.setField(userService, "userProfileCache", mock(UserProfileCache.class));
+        ReflectionTestUtils.setField(userService, "appId", "wx-app");
+        ReflectionTestUtils.setField(userService, "appSecret", "wx-secret");
+        ReflectionTestUtils.setField(userService, "loginThreads", 4);
+        ReflectionTestUtils.setField(userService, "loginQueueCapacity", 16);
+        ReflectionTestUtils.setField(userService, "phoneTimeoutMs", 5000L);
+        userService.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        userService.shutdown();
+        wxApiClient.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void loginLatencyIsBoundedBySlowerWxCall() {
+        // 预热连接池和登录线程
+        assertEquals(200, userService.wxLogin("code", null, "phone-code", null).getCode());
+
+        long sequentialMs = elapsedMillis(() -> {
+            wxApiClient.get("/sns/jscode2session?appid=wx-app&secret=wx-secret&js_code=code&grant_type=authorization_code");
+            wxPhoneUtil.getPhoneNumber("phone-code");
+        });
+
+        long start = System.nanoTime();
+        Result<LoginVo> result = userService.wxLogin("code", null, "phone-code", null);
+        long parallelMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(200, result.getCode());
+        LoginVo loginVo = result.getData();
+        assertEquals(42L, loginVo.getUserId());
+        assertEquals("13800000000", loginVo.getPhoneNumber());
+        assertNotNull(loginVo.getToken());
+
+        assertTrue(sequentialMs >= 2 * WX_DELAY_MS, "依次调用耗时 " + sequentialMs + "ms");
+        // 并行后接近较慢的一个接口，而不是两者之和
+        assertTrue(parallelMs < 2 * WX_DELAY_MS - 100,
+                "并行登录耗时 " + parallelMs + "ms, 依次调用 " + sequentialMs + "ms");
+        assertEquals(3, stub.hits("/sns/jscode2session"));
+    }
+
+    @Test
+    void loginBuildsResponseWithoutExtraLookups() {
+        Result<LoginVo> result = userService.wxLogin("code", "新昵称", null, null);
+
+        assertEquals(200, result.getCode());
+        assertEquals("测试用户", result.getData().getNickname());
+        assertEquals(0, stub.hits("/wxa/business/getuserphonenumber"));
+        // 用户只在upsert后读取一次，不再解析token后重复查询
+        verify(userMapper).selectByIdIncludingDisabled(42L);
+        verify(userMapper, never()).selectById(any());
+    }
+
+    private static long elapsedMillis(Runnable action) {
+        long start = System.nanoTime();
+        action.run();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,169 @@
+package com.fileshare.app.task;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.fileshare.app.entity.FileInfo;
+import com.fileshare.app.service.FileContentService;
+import com.fileshare.app.service.TaskLeaseService;
+import com.fileshare.app.service.impl.FileServiceImpl;
+import com.fileshare.app.service.impl.FileServiceImpl.RetireResult;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 过期文件清理测试：回收失败的批次和删除失败的对象要在本轮内重试
+ */
+class FileCleanTaskTest {
+
+    private static final List<Long> EXPIRED_IDS = Arrays.asList(1L, 2L, 3L);
+
+    private FileServiceImpl fileService;
+
+    private FileContentService fileContentService;
+
+    private TaskLeaseService taskLeaseService;
+
+    private FileCleanTask task;
+
+    /**
+     * 仍为有效状态的过期文件
+     */
+    private final Set<Long> active = new HashSet<>(EXPIRED_IDS);
+
+    @BeforeAll
+    static void initTableInfo() {
+        // 构建LambdaQueryWrapper需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), FileInfo.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        fileService = mock(FileServiceImpl.class);
+        fileContentService = mock(FileContentService.class);
+        taskLeaseService = mock(TaskLeaseService.class);
+        when(taskLeaseService.tryAcquire(anyString(), anyLong())).thenReturn(true);
+        when(fileService.list(any())).thenAnswer(invocation -> {
+            List<FileInfo> batch = new ArrayList<>();
+            for (Long id : EXPIRED_IDS) {
+                if (active.contains(id)) {
+                    FileInfo fileInfo = new FileInfo();
+                    fileInfo.setId(id);
+                    fileInfo.setExpireTime(LocalDateTime.now().minusDays(1));
+                    batch.add(fileInfo);
+                }
+            }
+            return batch;
+        });
+
+        task = new FileCleanTask();
+        ReflectionTestUtils.setField(task, "fileService", fileService);
+        ReflectionTestUtils.setField(task, "fileContentService", fileContentService);
+        ReflectionTestUtils.setField(task, "taskLeaseService", taskLeaseService);
+        ReflectionTestUtils.setField(task, "batchSize", 500);
+        ReflectionTestUtils.setField(task, "shardCount", 1);
+        ReflectionTestUtils.setField(task, "leaseSeconds", 300L);
+        ReflectionTestUtils.setField(task, "maxWaitMinutes", 30L);
+        ReflectionTestUtils.setField(task, "maxObjectsPerSecond", 0);
+        ReflectionTestUtils.setField(task, "batchRetries", 3);
+        ReflectionTestUtils.setField(task, "retryBackoffMs", 10L);
+    }
+
+    @Test
+    void failedBatchIsRetiredInSameRun() {
+        RetireResult result = retireResult(3, Collections.singletonList("objects/a"));
+        when(fileService.retireFiles(EXPIRED_IDS))
+                .thenThrow(new TransientDataAccessResourceException("lock wait timeout"))
+                .thenAnswer(invocation -> {
+                    active.removeAll(EXPIRED_IDS);
+                    return result;
+                });
+        when(fileContentService.removeStorageObjects(anyList())).thenReturn(Collections.emptyList());
+
+        task.cleanExpiredFiles();
+
+        verify(fileService, times(2)).retireFiles(EXPIRED_IDS);
+        verify(fileContentService).removeStorageObjects(Collections.singletonList("objects/a"));
+        verify(taskLeaseService).markFinished(anyString());
+        assertNull(currentRun());
+    }
+
+    @Test
+    void batchFailingAllRetriesIsRescannedNextCycle() {
+        RetireResult result = retireResult(3, Collections.emptyList());
+        when(fileService.retireFiles(EXPIRED_IDS))
+                .thenThrow(new TransientDataAccessResourceException("1"))
+                .thenThrow(new TransientDataAccessResourceException("2"))
+                .thenThrow(new TransientDataAccessResourceException("3"))
+                .thenThrow(new TransientDataAccessResourceException("4"))
+                .thenAnswer(invocation -> {
+                    active.removeAll(EXPIRED_IDS);
+                    return result;
+                });
+
+        task.cleanExpiredFiles();
+        verify(taskLeaseService, times(0)).markFinished(anyString());
+        assertNotNull(currentRun());
+
+        task.retryPendingShards();
+        verify(fileService, times(5)).retireFiles(EXPIRED_IDS);
+        verify(taskLeaseService).markFinished(anyString());
+        assertNull(currentRun());
+    }
+
+    @Test
+    void failedObjectDeletesAreRetried() {
+        RetireResult result = retireResult(3, Arrays.asList("objects/a", "objects/b"));
+        when(fileService.retireFiles(EXPIRED_IDS)).thenAnswer(invocation -> {
+            active.removeAll(EXPIRED_IDS);
+            return result;
+        });
+        when(fileContentService.removeStorageObjects(Arrays.asList("objects/a", "objects/b")))
+                .thenReturn(Collections.singletonList("objects/b"));
+        when(fileContentService.removeStorageObjects(Collections.singletonList("objects/b")))
+                .thenReturn(Collections.emptyList());
+
+        task.cleanExpiredFiles();
+        verify(taskLeaseService).markFinished(anyString());
+        assertNotNull(currentRun());
+
+        task.retryPendingShards();
+        verify(fileContentService).removeStorageObjects(Collections.singletonList("objects/b"));
+        assertNull(currentRun());
+    }
+
+    private Object currentRun() {
+        return ((AtomicReference<?>) ReflectionTestUtils.getField(task, "currentRun")).get();
+    }
+
+    private static RetireResult retireResult(int retiredCount, List<String> storagePaths) {
+        RetireResult result = new RetireResult();
+        ReflectionTestUtils.setField(result, "retiredCount", retiredCount);
+        result.getStoragePaths().addAll(storagePaths);
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package com.fileshare.app.task;
+
+import com.fileshare.app.task.StorageReconcileTask.PathCursor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 存储对账归并测试：对象名按UTF-8字节序比较，增补平面字符不会被误判为孤儿
+ */
+class StorageReconcileTaskTest {
+
+    /**
+     * U+FFFD，UTF-8为EF BF BD
+     */
+    private static final String REPLACEMENT = "a�.bin";
+
+    /**
+     * U+1F600（emoji），UTF-8为F0 9F 98 80，UTF-16为代理对D83D DE00
+     */
+    private static final String EMOJI = "a😀.bin";
+
+    /**
+     * U+E000（私用区），UTF-8为EE 80 80
+     */
+    private static final String PRIVATE_USE = "a.bin";
+
+    @Test
+    void comparesByUtf8Bytes() {
+        List<String> names = new ArrayList<>(Arrays.asList(EMOJI, "b.bin", REPLACEMENT, "a.bin", PRIVATE_USE));
+        List<String> expected = new ArrayList<>(names);
+        expected.sort((x, y) -> compareBytes(x.getBytes(StandardCharsets.UTF_8), y.getBytes(StandardCharsets.UTF_8)));
+
+        names.sort(StorageReconcileTask::compareUtf8);
+        assertEquals(expected, names);
+        assertEquals(Arrays.asList("a.bin", PRIVATE_USE, REPLACEMENT, EMOJI, "b.bin"), names);
+        // UTF-16顺序与字节序相反
+        assertTrue(EMOJI.compareTo(REPLACEMENT) < 0);
+        assertTrue(StorageReconcileTask.compareUtf8(EMOJI, REPLACEMENT) > 0);
+        assertEquals(0, StorageReconcileTask.compareUtf8(EMOJI, new String(EMOJI)));
+        assertTrue(StorageReconcileTask.compareUtf8("a", "a.bin") < 0);
+    }
+
+    @Test
+    void cursorFindsNonBmpPathAfterBmpPath() {
+        // 数据库按utf8mb4_bin（字节序）返回，MinIO也按字节序列举
+        List<String> referenced = Arrays.asList("a.bin", REPLACEMENT, EMOJI, "b.bin");
+        PathCursor cursor = new PathCursor(null, after -> after == null ? referenced : Collections.emptyList());
+
+        assertTrue(cursor.contains("a.bin"));
+        assertFalse(cursor.contains(PRIVATE_USE));
+        assertTrue(cursor.contains(REPLACEMENT));
+        assertTrue(cursor.contains(EMOJI));
+        assertTrue(cursor.contains("b.bin"));
+        assertFalse(cursor.contains("c.bin"));
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,87 @@
+package com.fileshare.app.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 客户端IP解析测试
+ */
+class ClientIpResolverTest {
+
+    private ClientIpResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new ClientIpResolver();
+        ReflectionTestUtils.setField(resolver, "trustedProxies", "127.0.0.1,10.0.0.0/8,::1");
+        resolver.init();
+    }
+
+    @Test
+    void untrustedPeerIgnoresForwardedHeaders() {
+        MockHttpServletRequest request = request("203.0.113.9", "198.51.100.1");
+        assertEquals("203.0.113.9", resolver.resolve(request));
+    }
+
+    @Test
+    void takesRightmostUntrustedHop() {
+        MockHttpServletRequest request = request("10.0.0.2", "1.1.1.1, 198.51.100.7, 10.0.0.5");
+        assertEquals("198.51.100.7", resolver.resolve(request));
+    }
+
+    @Test
+    void invalidHopFallsBackToRemoteAddr() {
+        assertEquals("10.0.0.2", resolver.resolve(request("10.0.0.2", "1.1.1.1, evil\tvalue")));
+        assertEquals("10.0.0.2", resolver.resolve(request("10.0.0.2", "deadbeef")));
+        assertEquals("10.0.0.2", resolver.resolve(request("10.0.0.2", "1.2.3.4:8080")));
+        StringBuilder longHop = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longHop.append("1");
+        }
+        assertEquals("10.0.0.2", resolver.resolve(request("10.0.0.2", longHop.toString())));
+    }
+
+    @Test
+    void invalidRealIpFallsBackToRemoteAddr() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("127.0.0.1");
+        request.addHeader("X-Real-IP", "localhost");
+        assertEquals("127.0.0.1", resolver.resolve(request));
+    }
+
+    @Test
+    void parsesLiteralsWithoutResolver() {
+        assertArrayEquals(new byte[]{(byte) 192, (byte) 168, 0, 1}, ClientIpResolver.toBytes("192.168.0.1"));
+        assertNull(ClientIpResolver.toBytes("256.1.1.1"));
+        assertNull(ClientIpResolver.toBytes("1.2.3"));
+        assertNull(ClientIpResolver.toBytes("1.2.3.4.5"));
+        assertNull(ClientIpResolver.toBytes("cafe"));
+        assertNull(ClientIpResolver.toBytes("１.２.３.４"));
+
+        byte[] loopback = new byte[16];
+        loopback[15] = 1;
+        assertArrayEquals(loopback, ClientIpResolver.toBytes("::1"));
+        assertArrayEquals(new byte[16], ClientIpResolver.toBytes("::"));
+        assertEquals(16, ClientIpResolver.toBytes("2001:db8:0:0:0:0:2:1").length);
+        assertEquals(16, ClientIpResolver.toBytes("2001:db8::2:1").length);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, ClientIpResolver.toBytes("::ffff:1.2.3.4"));
+        assertNull(ClientIpResolver.toBytes("2001:db8::2::1"));
+        assertNull(ClientIpResolver.toBytes("1:2:3:4:5:6:7:8:9"));
+        assertNull(ClientIpResolver.toBytes("1:2:3:4::5:6:7:8"));
+        assertNull(ClientIpResolver.toBytes("12345::1"));
+        assertNull(ClientIpResolver.toBytes("fe80::1%eth0"));
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Forwarded-For", forwardedFor);
+        return request;
+    }
+}
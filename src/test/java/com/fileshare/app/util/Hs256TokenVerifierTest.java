@@ -0,0 +1,106 @@
+package com.fileshare.app.util;
+
+import com.fileshare.app.util.JwtUtil.TokenClaims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 专用HS256验证器与JJWT的一致性测试
+ */
+class Hs256TokenVerifierTest {
+
+    private static final String SECRET = "fileshare123456";
+
+    private JwtUtil jwtUtil;
+
+    private Hs256TokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 7200000L);
+        ReflectionTestUtils.setField(jwtUtil, "fastVerify", true);
+        jwtUtil.init();
+        verifier = new Hs256TokenVerifier(TextCodec.BASE64.decode(SECRET));
+    }
+
+    @Test
+    void verifiesTokensIssuedByJwtUtil() {
+        String token = jwtUtil.generateToken(42L);
+        TokenClaims claims = verifier.verify(token);
+        Date expiration = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getExpiration();
+
+        assertEquals(42L, claims.getUserId());
+        assertEquals(expiration.getTime(), claims.getExpiration());
+        assertEquals(42L, jwtUtil.getUserIdFromToken(token));
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        String token = jwtUtil.generateToken(42L);
+        int secondDot = token.lastIndexOf('.');
+        String otherPayload = jwtUtil.generateToken(43L).split("\\.")[1];
+        String swapped = token.substring(0, token.indexOf('.') + 1) + otherPayload + token.substring(secondDot);
+        char last = token.charAt(token.length() - 1);
+        String badSignature = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+
+        assertNull(verifier.verify(swapped));
+        assertNull(verifier.verify(badSignature));
+        assertNull(verifier.verify("abc"));
+        assertNull(verifier.verify("a.b.c.d"));
+        assertNull(jwtUtil.parseToken(swapped));
+    }
+
+    @Test
+    void rejectsTokensSignedWithAnotherKey() {
+        String token = Jwts.builder()
+                .setSubject("42")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS256, "another-secret")
+                .compact();
+        assertNull(verifier.verify(token));
+        assertNull(jwtUtil.parseToken(token));
+    }
+
+    @Test
+    void leavesOtherFormatsToJjwt() {
+        String hs512 = Jwts.builder()
+                .setSubject("42")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+        String typedHeader = Jwts.builder()
+                .setHeaderParam("typ", "JWT")
+                .setSubject("42")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+
+        assertSame(Hs256TokenVerifier.UNSUPPORTED, verifier.verify(hs512));
+        assertSame(Hs256TokenVerifier.UNSUPPORTED, verifier.verify(typedHeader));
+        assertEquals(42L, jwtUtil.getUserIdFromToken(hs512));
+        assertEquals(42L, jwtUtil.getUserIdFromToken(typedHeader));
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        String token = Jwts.builder()
+                .setSubject("42")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+        assertEquals(42L, verifier.verify(token).getUserId());
+        assertNull(jwtUtil.parseToken(token));
+    }
+}
@@ -0,0 +1,187 @@
+package com.fileshare.app.util;
+
+import cn.hutool.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 微信HTTP客户端测试：超时、并发上限、熔断与恢复，使用本地微信接口桩
+ */
+class WxApiClientTest {
+
+    private WxApiStub stub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new WxApiStub();
+        stub.on("/ok", (query, body) -> WxApiStub.Response.json("{\"errcode\":0,\"echo\":\"" + query + "\"}"));
+        stub.on("/error", (query, body) -> new WxApiStub.Response(502, "bad gateway"));
+        stub.on("/slow", (query, body) -> {
+            Thread.sleep(1000);
+            return WxApiStub.Response.json("{\"errcode\":0}");
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void parsesResponseAndRecordsEndpointStats() throws Exception {
+        WxApiClient client = stub.newClient(500, 10, 5, 30);
+        try {
+            JSONObject result = client.get("/ok?appid=wx&secret=s3cret");
+            assertEquals(0, result.getInt("errcode"));
+            assertEquals("appid=wx&secret=s3cret", result.getStr("echo"));
+
+            Map<String, Object> endpoints = endpoints(client);
+            // 统计维度不带查询参数，避免secret出现在监控中
+            assertEquals(1, endpoints.size());
+            assertTrue(endpoints.containsKey("/ok"));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void readTimeoutFailsTheCall() throws Exception {
+        WxApiClient client = stub.newClient(200, 10, 5, 30);
+        try {
+            long start = System.nanoTime();
+            assertThrows(RuntimeException.class, () -> client.get("/slow"));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 900);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsCallsBeyondConcurrencyLimit() throws Exception {
+        WxApiClient client = stub.newClient(2000, 1, 5, 30);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<JSONObject> slow = executor.submit(() -> client.get("/slow"));
+            waitForHits("/slow", 1);
+
+            RuntimeException rejected = assertThrows(RuntimeException.class, () -> client.get("/ok"));
+            assertTrue(rejected.getMessage().contains("繁忙"));
+            assertEquals(0, stub.hits("/ok"));
+            assertEquals(0, slow.get(5, TimeUnit.SECONDS).getInt("errcode"));
+            assertEquals(1L, client.stats().get("rejectedCount"));
+        } finally {
+            executor.shutdownNow();
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndRecoversAfterProbe() throws Exception {
+        AtomicBoolean healthy = new AtomicBoolean(false);
+        stub.on("/flaky", (query, body) -> healthy.get()
+                ? WxApiStub.Response.json("{\"errcode\":0}")
+                : new WxApiStub.Response(503, "unavailable"));
+        WxApiClient client = stub.newClient(500, 10, 3, 1);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertThrows(RuntimeException.class, () -> client.get("/flaky"));
+            }
+            assertEquals("OPEN", client.stats().get("breakerState"));
+
+            // 熔断期间直接失败，不再请求微信
+            RuntimeException open = assertThrows(RuntimeException.class, () -> client.get("/flaky"));
+            assertTrue(open.getMessage().contains("熔断"));
+            assertEquals(3, stub.hits("/flaky"));
+
+            // 到期后放行探测请求，探测失败继续熔断
+            Thread.sleep(1100);
+            assertThrows(RuntimeException.class, () -> client.get("/flaky"));
+            assertEquals(4, stub.hits("/flaky"));
+            assertEquals("OPEN", client.stats().get("breakerState"));
+
+            // 探测成功后恢复
+            healthy.set(true);
+            Thread.sleep(1100);
+            assertEquals(0, client.get("/flaky").getInt("errcode"));
+            assertEquals("CLOSED", client.stats().get("breakerState"));
+            assertEquals(0, client.get("/ok").getInt("errcode"));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void onlyOneProbeIsAllowedWhileHalfOpen() throws Exception {
+        AtomicBoolean healthy = new AtomicBoolean(false);
+        CountDownLatch probeStarted = new CountDownLatch(1);
+        CountDownLatch finishProbe = new CountDownLatch(1);
+        stub.on("/probe", (query, body) -> {
+            if (!healthy.get()) {
+                return new WxApiStub.Response(503, "unavailable");
+            }
+            probeStarted.countDown();
+            finishProbe.await(5, TimeUnit.SECONDS);
+            return WxApiStub.Response.json("{\"errcode\":0}");
+        });
+        WxApiClient client = stub.newClient(5000, 10, 1, 1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThrows(RuntimeException.class, () -> client.get("/probe"));
+            healthy.set(true);
+            Thread.sleep(1100);
+
+            Future<JSONObject> probe = executor.submit(() -> client.get("/probe"));
+            assertTrue(probeStarted.await(5, TimeUnit.SECONDS));
+            assertThrows(RuntimeException.class, () -> client.get("/probe"));
+            assertEquals(2, stub.hits("/probe"));
+
+            finishProbe.countDown();
+            assertEquals(0, probe.get(5, TimeUnit.SECONDS).getInt("errcode"));
+            assertEquals("CLOSED", client.stats().get("breakerState"));
+        } finally {
+            finishProbe.countDown();
+            executor.shutdownNow();
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void serverErrorsCountAsFailures() throws Exception {
+        WxApiClient client = stub.newClient(500, 10, 5, 30);
+        try {
+            assertThrows(RuntimeException.class, () -> client.get("/error"));
+            @SuppressWarnings("unchecked")
+            Map<String, Object> error = (Map<String, Object>) endpoints(client).get("/error");
+            assertEquals(1L, error.get("failureCount"));
+            assertFalse("OPEN".equals(client.stats().get("breakerState")));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> endpoints(WxApiClient client) {
+        return (Map<String, Object>) client.stats().get("endpoints");
+    }
+
+    private void waitForHits(String path, int hits) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stub.hits(path) < hits && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
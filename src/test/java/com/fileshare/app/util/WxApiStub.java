@@ -0,0 +1,149 @@
+package com.fileshare.app.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地微信接口桩，基于JDK自带的HttpServer
+ */
+public class WxApiStub implements AutoCloseable {
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+    public WxApiStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * 接口处理逻辑
+     */
+    public interface Handler {
+
+        /**
+         * @param query 查询参数，没有时为空字符串
+         * @param body 请求体
+         * @return 响应
+         */
+        Response handle(String query, String body) throws Exception;
+    }
+
+    /**
+     * 桩响应
+     */
+    public static class Response {
+
+        private final int status;
+
+        private final String body;
+
+        public Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public static Response json(String body) {
+            return new Response(200, body);
+        }
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * 设置接口的处理逻辑
+     */
+    public void on(String path, Handler handler) {
+        handlers.put(path, handler);
+    }
+
+    /**
+     * 接口收到的请求数
+     */
+    public int hits(String path) {
+        AtomicInteger count = hits.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 创建指向本桩的微信HTTP客户端
+     */
+    public WxApiClient newClient(int readTimeoutMs, int maxConcurrent, int failureThreshold, long openSeconds) {
+        WxApiClient client = new WxApiClient();
+        ReflectionTestUtils.setField(client, "apiBaseUrl", baseUrl());
+        ReflectionTestUtils.setField(client, "maxConnections", 50);
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", readTimeoutMs);
+        ReflectionTestUtils.setField(client, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 100L);
+        ReflectionTestUtils.setField(client, "failureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(client, "openSeconds", openSeconds);
+        client.init();
+        return client;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        hits.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        Response response;
+        Handler handler = handlers.get(path);
+        try {
+            response = handler != null
+                    ? handler.handle(query == null ? "" : query, read(exchange.getRequestBody()))
+                    : new Response(404, "{\"errcode\":404}");
+        } catch (Exception e) {
+            response = new Response(500, "{\"errcode\":-1}");
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(response.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // 客户端已超时断开
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int len;
+        while ((len = in.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}